@@ -15,6 +15,8 @@
  */
 package org.bankinterface.param;
 
+import java.nio.charset.Charset;
+
 import org.bankinterface.enums.ServiceType;
 
 /**
@@ -24,6 +26,7 @@ import org.bankinterface.enums.ServiceType;
 public class Notification extends Parameter {
     private String charset;
     private String content;
+    private byte[] rawContent;
 
     private Notification() {
     }
@@ -56,11 +59,14 @@ public class Notification extends Parameter {
     }
 
     /**
-     * 通知內容
+     * 通知內容,只设置了原始字节时按字符集解码一次
      * 
      * @return
      */
     public String getContent() {
+        if (content == null && rawContent != null) {
+            content = charset == null ? new String(rawContent) : new String(rawContent, Charset.forName(charset));
+        }
         return content;
     }
 
@@ -73,6 +79,24 @@ public class Notification extends Parameter {
         this.content = content;
     }
 
+    /**
+     * 通知原始字节,可直接交给按字节验签的验签服务
+     * 
+     * @return
+     */
+    public byte[] getRawContent() {
+        return rawContent;
+    }
+
+    /**
+     * 通知原始字节
+     * 
+     * @param rawContent
+     */
+    public void setRawContent(byte[] rawContent) {
+        this.rawContent = rawContent;
+    }
+
     /**
      * 异步支付通知
      * 
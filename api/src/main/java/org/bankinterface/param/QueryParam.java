@@ -16,6 +16,7 @@
 package org.bankinterface.param;
 
 import java.util.Date;
+import java.util.List;
 
 import org.bankinterface.enums.ServiceType;
 import org.bankinterface.enums.TransactionType;
@@ -25,11 +26,12 @@ import org.bankinterface.enums.TransactionType;
  * 
  */
 public class QueryParam extends Parameter {
-    private TransactionType transactionType;
-    private String          orderNo;
-    private Date            orderDate;
-    private Date            startDate;
-    private Date            endDate;
+    private TransactionType  transactionType;
+    private String           orderNo;
+    private Date             orderDate;
+    private Date             startDate;
+    private Date             endDate;
+    private List<QueryParam> items;
 
     private QueryParam() {
     }
@@ -171,4 +173,22 @@ public class QueryParam extends Parameter {
         queryParam.setTransactionType(TransactionType.REFUND);
         return queryParam;
     }
+
+    /**
+     * 批量查询明细,每笔明细作为单笔查询发送
+     * 
+     * @return
+     */
+    public List<QueryParam> getItems() {
+        return items;
+    }
+
+    /**
+     * 批量查询明细,每笔明细作为单笔查询发送
+     * 
+     * @param items
+     */
+    public void setItems(List<QueryParam> items) {
+        this.items = items;
+    }
 }
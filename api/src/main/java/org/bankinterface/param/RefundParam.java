@@ -17,6 +17,7 @@ package org.bankinterface.param;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.List;
 
 import org.bankinterface.enums.ServiceType;
 
@@ -25,11 +26,12 @@ import org.bankinterface.enums.ServiceType;
  * 
  */
 public class RefundParam extends Parameter {
-    private String     bankSerialNo;
-    private String     refundNo;
-    private Date       refundDate;
-    private String     currencyType;
-    private BigDecimal refundAmount;
+    private String            bankSerialNo;
+    private String            refundNo;
+    private Date              refundDate;
+    private String            currencyType;
+    private BigDecimal        refundAmount;
+    private List<RefundParam> items;
 
     public RefundParam() {
         setServiceType(ServiceType.REFUND);
@@ -125,4 +127,32 @@ public class RefundParam extends Parameter {
         this.refundAmount = refundAmount;
     }
 
+    /**
+     * 批量退款明细,每笔明细作为单笔退款发送
+     * 
+     * @return
+     */
+    public List<RefundParam> getItems() {
+        return items;
+    }
+
+    /**
+     * 批量退款明细,每笔明细作为单笔退款发送
+     * 
+     * @param items
+     */
+    public void setItems(List<RefundParam> items) {
+        this.items = items;
+    }
+
+    /**
+     * 批量退款
+     * 
+     * @return
+     */
+    public static RefundParam batchRefundParam() {
+        RefundParam refundParam = new RefundParam();
+        refundParam.setServiceType(ServiceType.BATCH_REFUND);
+        return refundParam;
+    }
 }
@@ -17,6 +17,7 @@ package org.bankinterface.result;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.List;
 
 import org.bankinterface.enums.OrderStatus;
 
@@ -25,14 +26,15 @@ import org.bankinterface.enums.OrderStatus;
  * 
  */
 public class QueryResult extends Result {
-    private String      orderNo;
-    private String      bankSerialNo;
-    private String      currencyType;
-    private BigDecimal  payAmount;
-    private BigDecimal  refundAmount;
-    private Date        bankSuccessDate;
-    private OrderStatus orderStatus;
-    private String      merchantNo;
+    private String            orderNo;
+    private String            bankSerialNo;
+    private String            currencyType;
+    private BigDecimal        payAmount;
+    private BigDecimal        refundAmount;
+    private Date              bankSuccessDate;
+    private OrderStatus       orderStatus;
+    private String            merchantNo;
+    private List<QueryResult> items;
 
     /**
      * 订单号
@@ -178,4 +180,21 @@ public class QueryResult extends Result {
         this.merchantNo = merchantNo;
     }
 
+    /**
+     * 批量查询明细结果,每笔结果带有各自的状态
+     * 
+     * @return
+     */
+    public List<QueryResult> getItems() {
+        return items;
+    }
+
+    /**
+     * 批量查询明细结果,每笔结果带有各自的状态
+     * 
+     * @param items
+     */
+    public void setItems(List<QueryResult> items) {
+        this.items = items;
+    }
 }
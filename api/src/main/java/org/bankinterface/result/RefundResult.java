@@ -17,6 +17,7 @@ package org.bankinterface.result;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.List;
 
 import org.bankinterface.enums.OrderStatus;
 
@@ -25,14 +26,15 @@ import org.bankinterface.enums.OrderStatus;
  * 
  */
 public class RefundResult extends Result {
-    private String      orderNo;
-    private String      bankSerialNo;
-    private String      currencyType;
-    private BigDecimal  refundAmount;
-    private Date        refundSuccessDate;
-    private OrderStatus orderStatus;
-    private String      merchantNo;
-    private String      callbackMessage;
+    private String             orderNo;
+    private String             bankSerialNo;
+    private String             currencyType;
+    private BigDecimal         refundAmount;
+    private Date               refundSuccessDate;
+    private OrderStatus        orderStatus;
+    private String             merchantNo;
+    private String             callbackMessage;
+    private List<RefundResult> items;
 
     /**
      * 退款单号
@@ -178,4 +180,21 @@ public class RefundResult extends Result {
         this.callbackMessage = callbackMessage;
     }
 
+    /**
+     * 批量退款明细结果,每笔结果带有各自的状态
+     * 
+     * @return
+     */
+    public List<RefundResult> getItems() {
+        return items;
+    }
+
+    /**
+     * 批量退款明细结果,每笔结果带有各自的状态
+     * 
+     * @param items
+     */
+    public void setItems(List<RefundResult> items) {
+        this.items = items;
+    }
 }
@@ -17,17 +17,35 @@ package org.bankinterface.bank;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.bankinterface.exception.SignVerifyException;
 import org.bankinterface.json.JsonHelper;
 import org.bankinterface.param.AsyncPayParam;
+import org.bankinterface.param.Notification;
+import org.bankinterface.param.QueryParam;
 import org.bankinterface.result.PrePayResult;
+import org.bankinterface.result.QueryResult;
+import org.bankinterface.verifier.Verifier;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 public class MockTest {
     private Mock bank = new Mock();
 
@@ -60,4 +78,101 @@ public class MockTest {
         assertEquals(requestUrl, result.getRequestUrl());
     }
 
+    @Test
+    public final void testPrePayStream() throws Exception {
+        String requestUrl = "https://api.xxxbank.com/xxx";
+        AsyncPayParam param = new AsyncPayParam();
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("merchantNo", "merchantNo");
+        config.put("requestUrl", requestUrl);
+        Date current = new Date();
+        param.setOrderNo(current.getTime() + "");
+        param.setOrderDate(current);
+        param.setOrderAmount(BigDecimal.TEN);
+        param.setConfig(config);
+
+        byte[] jsonParam = JsonHelper.toJsonBytes(param);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bank.prePay(new ByteArrayInputStream(jsonParam), out);
+        PrePayResult result = JsonHelper.fromJson(out.toByteArray(), PrePayResult.class);
+        assertTrue(result.isSuccess());
+        assertEquals(requestUrl, result.getRequestUrl());
+        assertArrayEquals(out.toByteArray(), bank.prePay(jsonParam));
+    }
+
+    @Test
+    public final void testBatchQuery() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/query", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                byte[] body = exchange.getRequestURI().getQuery().getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        // 结果报文即查询串,验签时原样解析
+        bank.registerVerifier(new Verifier() {
+            public String getName() {
+                return "";
+            }
+
+            public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+                    Notification notification) throws SignVerifyException {
+                Map<String, String> map = new HashMap<String, String>();
+                for (String pair : notification.getContent().trim().split("&")) {
+                    map.put(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+                }
+                return map;
+            }
+        });
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/query?orderNo=";
+            QueryParam param = QueryParam.batchPayQueryParam();
+            param.getConfig().put("requestUrl", url + "inherited");
+            List<QueryParam> items = new ArrayList<QueryParam>();
+            for (int i = 0; i < 16; i++) {
+                QueryParam item = QueryParam.payQueryParam();
+                item.setServiceType(null);
+                item.setOrderNo(String.valueOf(i));
+                item.getConfig().put("requestUrl", url + i);
+                items.add(item);
+            }
+            // 未配置请求地址的明细继承批量请求配置
+            items.add(QueryParam.payQueryParam());
+            param.setItems(items);
+
+            long begin = System.nanoTime();
+            QueryResult result = bank.query(param);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+            assertTrue(result.isSuccess());
+            assertEquals(items.size(), result.getItems().size());
+            for (int i = 0; i < 16; i++) {
+                QueryResult item = result.getItems().get(i);
+                assertTrue(item.getMessage(), item.isSuccess());
+                assertEquals(String.valueOf(i), item.getOrderNo());
+                // 调用方传入的明细不被修改
+                assertNull(items.get(i).getServiceType());
+            }
+            assertEquals("inherited", result.getItems().get(16).getOrderNo());
+            assertTrue(items.get(16).getConfig().isEmpty());
+            assertTrue("maxRunning=" + maxRunning, maxRunning.get() > 1);
+            assertTrue("elapsed=" + elapsed, elapsed < 17 * 100);
+        } finally {
+            server.stop(0);
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bankinterface.adaptor.DefaultBankAdaptorHandler.RequestParameters;
+import org.bankinterface.bank.Mock;
+import org.bankinterface.benchmark.BenchmarkBank;
+import org.bankinterface.benchmark.BenchmarkKeys;
+import org.bankinterface.builder.ResultBuilder;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.json.JsonHelper;
+import org.bankinterface.param.AsyncPayParam;
+import org.bankinterface.param.Notification;
+import org.bankinterface.result.PrePayResult;
+import org.bankinterface.result.QueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 支付处理流程,不含网络请求.
+ * 
+ * <pre>
+ * Mock         仿真银行,不签名
+ * BenchmarkBank 签名支付请求,验证并转换查询结果
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    private Mock                      mock;
+    private BenchmarkBank             signedBank;
+    private DefaultBankAdaptorHandler mockHandler;
+    private DefaultBankAdaptorHandler signedHandler;
+    private AsyncPayParam             parameter;
+    private AsyncPayParam             signedParameter;
+    private String                    json;
+    private byte[]                    jsonBytes;
+    private Map<String, String>       verifiedMap;
+    private Map<String, Object>       resultMap;
+    private Notification              notification;
+
+    @Setup
+    public void setUp() throws Exception {
+        mock = new Mock();
+        mock.init();
+        mockHandler = (DefaultBankAdaptorHandler) mock.getHandler();
+        signedBank = new BenchmarkBank();
+        signedBank.init();
+        signedHandler = (DefaultBankAdaptorHandler) signedBank.getHandler();
+
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("merchantNo", "100000000000001");
+        config.put("requestUrl", "https://api.xxxbank.com/xxx");
+        parameter = newParameter(config);
+        json = JsonHelper.toJson(parameter);
+        jsonBytes = JsonHelper.toJsonBytes(parameter);
+
+        Map<String, String> signedConfig = BenchmarkKeys.getConfig();
+        signedConfig.putAll(config);
+        signedParameter = newParameter(signedConfig);
+
+        verifiedMap = new HashMap<String, String>();
+        verifiedMap.put("order_no", "201310010000001");
+        verifiedMap.put("bank_serial_no", "9000000001");
+        verifiedMap.put("currency_type", "CNY");
+        verifiedMap.put("pay_amount", "10000");
+        verifiedMap.put("bank_success_date", "20131001120000");
+        verifiedMap.put("order_status", "1");
+        verifiedMap.put("merchant_no", "100000000000001");
+        verifiedMap.put("signature", "");
+        notification = new Notification(signedParameter);
+        notification.setServiceType(ServiceType.QUERY);
+        resultMap = signedHandler.buildResult(verifiedMap, notification);
+
+        // 确认流程可正常完成
+        if (!prePayTyped().isSuccess() || !prePaySigned().isSuccess()) {
+            throw new IllegalStateException("prePay failed");
+        }
+    }
+
+    private static AsyncPayParam newParameter(Map<String, String> config) {
+        AsyncPayParam parameter = new AsyncPayParam();
+        parameter.setOrderNo("201310010000001");
+        parameter.setOrderDate(new Date());
+        parameter.setOrderAmount(new BigDecimal("100.00"));
+        parameter.setCommodityName("benchmark");
+        parameter.setConfig(config);
+        return parameter;
+    }
+
+    @Benchmark
+    public PrePayResult prePayTyped() {
+        return mock.prePay(parameter);
+    }
+
+    @Benchmark
+    public String prePayJson() {
+        return mock.prePay(json);
+    }
+
+    @Benchmark
+    public byte[] prePayBytes() {
+        return mock.prePay(jsonBytes);
+    }
+
+    @Benchmark
+    public PrePayResult prePaySigned() {
+        return signedBank.prePay(signedParameter);
+    }
+
+    @Benchmark
+    public RequestParameters convertParameter() throws Exception {
+        return mockHandler.convertParameter(parameter);
+    }
+
+    @Benchmark
+    public RequestParameters convertParameterSigned() throws Exception {
+        return signedHandler.convertParameter(signedParameter);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildResult() throws Exception {
+        return signedHandler.buildResult(verifiedMap, notification);
+    }
+
+    @Benchmark
+    public QueryResult resultBuilderPopulate() {
+        return new ResultBuilder(QueryResult.class).populate(resultMap).create();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PrePayResult prePayTypedThreads4() {
+        return prePayTyped();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PrePayResult prePaySignedThreads4() {
+        return prePaySigned();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, Object> buildResultThreads4() throws Exception {
+        return buildResult();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.benchmark;
+
+import org.bankinterface.bank.Mock;
+import org.bankinterface.exception.ConfigException;
+import org.bankinterface.signer.SHA1withRSASigner;
+import org.bankinterface.verifier.SHA1withRSAVerfier;
+
+/**
+ * 基准测试用支付机构,在仿真银行基础上对支付请求签名,对查询结果验签并转换
+ * 
+ */
+public class BenchmarkBank extends Mock {
+    public static final String SIGNER = "SHA1withRSA";
+
+    @Override
+    public void init() throws ConfigException {
+        super.init();
+        registerSigner(new SHA1withRSASigner(SIGNER));
+        registerVerifier(new SHA1withRSAVerfier(SIGNER));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bankinterface.util.KeyStoreUtil;
+import org.bankinterface.util.Utils;
+
+/**
+ * 基准测试证书,首次使用时用keytool生成临时JKS证书库并注册为签名/验签证书
+ * 
+ */
+public class BenchmarkKeys {
+    public static final String ALIAS    = "benchmark";
+    public static final String PASSWORD = "benchmark";
+    /** 单字节字符集,签名原始字节可无损地作为字符串传递 */
+    public static final String CHARSET  = "ISO-8859-1";
+
+    private static File        keyStoreFile;
+
+    /**
+     * 签名/验签所需的配置信息
+     * 
+     * @return
+     */
+    public static synchronized Map<String, String> getConfig() {
+        if (keyStoreFile == null) {
+            keyStoreFile = generate();
+            KeyStoreUtil.registerSignVerifyStore(getUrl(), PASSWORD, "jks");
+        }
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("certFilePath", getUrl());
+        config.put("privateKeyAlias", ALIAS);
+        config.put("publicKeyAlias", ALIAS);
+        config.put("charset", CHARSET);
+        config.put("encode", Utils.CODE_BASE64);
+        return config;
+    }
+
+    /**
+     * 签名,结果为未编码的原始字节
+     * 
+     * @param data
+     * @return
+     * @throws Exception
+     */
+    public static synchronized String sign(String data) throws Exception {
+        getConfig();
+        KeyStore ks = KeyStore.getInstance("jks");
+        InputStream in = new FileInputStream(keyStoreFile);
+        try {
+            ks.load(in, PASSWORD.toCharArray());
+        } finally {
+            in.close();
+        }
+        Signature signature = Signature.getInstance(Utils.ALGORITHM_SHA1WITHRSA);
+        signature.initSign((PrivateKey) ks.getKey(ALIAS, PASSWORD.toCharArray()));
+        signature.update(data.getBytes(CHARSET));
+        return new String(signature.sign(), CHARSET);
+    }
+
+    private static String getUrl() {
+        try {
+            return keyStoreFile.toURI().toURL().toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File generate() {
+        try {
+            File file = File.createTempFile("bankinterface-benchmark", ".jks");
+            file.delete();
+            file.deleteOnExit();
+            String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+            Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", ALIAS, "-keyalg", "RSA",
+                    "-keysize", "2048", "-sigalg", "SHA256withRSA", "-validity", "3650", "-dname",
+                    "CN=bankinterface benchmark", "-storetype", "jks", "-keystore", file.getAbsolutePath(),
+                    "-storepass", PASSWORD, "-keypass", PASSWORD).redirectErrorStream(true).start();
+            InputStream out = process.getInputStream();
+            byte[] buffer = new byte[1024];
+            StringBuilder message = new StringBuilder();
+            int n;
+            while ((n = out.read(buffer)) != -1) {
+                message.append(new String(buffer, 0, n));
+            }
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("keytool failed: " + message);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException("keytool failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("keytool interrupted", e);
+        }
+    }
+}
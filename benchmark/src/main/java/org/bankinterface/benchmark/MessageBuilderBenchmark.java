@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bankinterface.builder.MessageBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 签名报文组装,覆盖全部组装风格
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBuilderBenchmark {
+    @Param({ "KEY_VALUE_AND", "KEY_VALUE_OR", "VALUE_OR", "VALUE_NULL" })
+    private String              joinStyle;
+
+    private Map<String, String> context;
+    private String[]            signedField;
+
+    @Setup
+    public void setUp() {
+        context = new HashMap<String, String>();
+        context.put("order_no", "201310010000001");
+        context.put("order_date", "20131001120000");
+        context.put("order_amount", "10000");
+        context.put("currency_type", "CNY");
+        context.put("merchant_no", "100000000000001");
+        context.put("version", "1.0.0");
+        signedField = new String[] { "order_no", "order_date", "order_amount", "currency_type", "merchant_no",
+                "version", "not_exists" };
+    }
+
+    @Benchmark
+    public StringBuilder build() {
+        return MessageBuilder.build(context, signedField, joinStyle);
+    }
+}
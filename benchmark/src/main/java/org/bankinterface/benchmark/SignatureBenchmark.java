@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bankinterface.builder.MessageBuilder;
+import org.bankinterface.config.BankConfig;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.param.AsyncPayParam;
+import org.bankinterface.param.Notification;
+import org.bankinterface.signer.SHA1withRSASigner;
+import org.bankinterface.verifier.SHA1withRSAVerfier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SHA1withRSA签名及验签
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+    private static final String[] SIGNED_FIELD = { "order_no", "order_date", "order_amount", "merchant_no" };
+
+    private SHA1withRSASigner     signer;
+    private SHA1withRSAVerfier    verifier;
+    private Map<String, String>   context;
+    private AsyncPayParam         parameter;
+    private Notification          notification;
+
+    @Setup
+    public void setUp() throws Exception {
+        signer = new SHA1withRSASigner(BenchmarkBank.SIGNER);
+        verifier = new SHA1withRSAVerfier(BenchmarkBank.SIGNER);
+        Map<String, String> config = BenchmarkKeys.getConfig();
+
+        context = new HashMap<String, String>();
+        context.put("order_date", "20131001120000");
+        context.put("order_amount", "10000");
+        context.put("merchant_no", "100000000000001");
+        parameter = new AsyncPayParam();
+        parameter.setConfig(config);
+
+        // 通知按&拆分,选取签名字节中不含&的订单号
+        String signature;
+        long orderNo = 201310010000001L;
+        do {
+            context.put("order_no", String.valueOf(orderNo++));
+            signature = BenchmarkKeys.sign(MessageBuilder.build(context, SIGNED_FIELD,
+                    BankConfig.JOIN_STYLE_KEY_VALUE_AND).toString());
+        } while (signature.indexOf('&') >= 0);
+
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('&');
+        }
+        content.append("signature=").append(signature);
+        notification = new Notification(parameter);
+        notification.setServiceType(ServiceType.QUERY);
+        notification.setContent(content.toString());
+        // 确认验签可通过
+        verify();
+    }
+
+    @Benchmark
+    public String sign() throws SignVerifyException {
+        return signer.sign(context, SIGNED_FIELD, BankConfig.JOIN_STYLE_KEY_VALUE_AND, parameter);
+    }
+
+    @Benchmark
+    public Map<String, String> verify() throws SignVerifyException {
+        return verifier.verify(SIGNED_FIELD, BankConfig.JOIN_STYLE_KEY_VALUE_AND, "signature", notification);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String signThreads4() throws SignVerifyException {
+        return sign();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, String> verifyThreads4() throws SignVerifyException {
+        return verify();
+    }
+}
@@ -15,11 +15,19 @@
  */
 package org.bankinterface.adaptor;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
 import org.bankinterface.builder.ResultBuilder;
 import org.bankinterface.enums.ServiceType;
 import org.bankinterface.json.JsonHelper;
 import org.bankinterface.param.AuthCodeParam;
 import org.bankinterface.param.Notification;
+import org.bankinterface.param.Parameter;
 import org.bankinterface.param.AsyncPayParam;
 import org.bankinterface.param.QueryParam;
 import org.bankinterface.param.RefundParam;
@@ -29,6 +37,7 @@ import org.bankinterface.result.AuthCodeResult;
 import org.bankinterface.result.PrePayResult;
 import org.bankinterface.result.QueryResult;
 import org.bankinterface.result.RefundResult;
+import org.bankinterface.result.Result;
 import org.bankinterface.result.SyncPayResult;
 import org.bankinterface.service.AsyncPay;
 import org.bankinterface.service.Query;
@@ -50,6 +59,16 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         this.handler = handler;
     }
 
+    /**
+     * 批量请求是否以单个请求发送
+     * 
+     * @param serviceType 批量服务类型
+     * @return
+     */
+    public boolean isBatchAllInOne(ServiceType serviceType) {
+        return handler != null && handler.isBatchAllInOne(serviceType);
+    }
+
     public PrePayResult prePay(AsyncPayParam asyncPayParam) {
         ResultBuilder resultBuilder = new ResultBuilder(PrePayResult.class);
         handler.handlePrePay(resultBuilder, asyncPayParam);
@@ -63,6 +82,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] prePay(byte[] json) {
+        AsyncPayParam asyncPayParam = JsonHelper.fromJson(json, AsyncPayParam.class);
+        return JsonHelper.toJsonBytes(prePay(asyncPayParam));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void prePay(InputStream json, OutputStream out) throws IOException {
+        AsyncPayParam asyncPayParam = JsonHelper.fromJson(json, AsyncPayParam.class);
+        JsonHelper.toJson(prePay(asyncPayParam), out);
+    }
+
     public AsyncPayResult resolveAsyncPayResult(Notification notification) {
         ResultBuilder resultBuilder = new ResultBuilder(AsyncPayResult.class);
         handler.handleNotification(resultBuilder, notification);
@@ -76,6 +118,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] resolveAsyncPayResult(byte[] json) {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        return JsonHelper.toJsonBytes(resolveAsyncPayResult(notification));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void resolveAsyncPayResult(InputStream json, OutputStream out) throws IOException {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        JsonHelper.toJson(resolveAsyncPayResult(notification), out);
+    }
+
     @Override
     public AuthCodeResult getAuthCode(AuthCodeParam authCodeParam) {
         ResultBuilder resultBuilder = new ResultBuilder(AuthCodeResult.class);
@@ -91,6 +156,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] getAuthCode(byte[] json) {
+        AuthCodeParam authCodeParam = JsonHelper.fromJson(json, AuthCodeParam.class);
+        return JsonHelper.toJsonBytes(getAuthCode(authCodeParam));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void getAuthCode(InputStream json, OutputStream out) throws IOException {
+        AuthCodeParam authCodeParam = JsonHelper.fromJson(json, AuthCodeParam.class);
+        JsonHelper.toJson(getAuthCode(authCodeParam), out);
+    }
+
     @Override
     public SyncPayResult pay(SyncPayParam syncPayParam) {
         ResultBuilder resultBuilder = new ResultBuilder(SyncPayResult.class);
@@ -106,6 +194,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] pay(byte[] json) {
+        SyncPayParam syncPayParam = JsonHelper.fromJson(json, SyncPayParam.class);
+        return JsonHelper.toJsonBytes(pay(syncPayParam));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void pay(InputStream json, OutputStream out) throws IOException {
+        SyncPayParam syncPayParam = JsonHelper.fromJson(json, SyncPayParam.class);
+        JsonHelper.toJson(pay(syncPayParam), out);
+    }
+
     @Override
     public SyncPayResult resolveSyncPayResult(Notification notification) {
         ResultBuilder resultBuilder = new ResultBuilder(SyncPayResult.class);
@@ -121,6 +232,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] resolveSyncPayResult(byte[] json) {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        return JsonHelper.toJsonBytes(resolveSyncPayResult(notification));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void resolveSyncPayResult(InputStream json, OutputStream out) throws IOException {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        JsonHelper.toJson(resolveSyncPayResult(notification), out);
+    }
+
     @Override
     public QueryResult query(QueryParam queryParam) {
         ResultBuilder resultBuilder = new ResultBuilder(QueryResult.class);
@@ -144,6 +278,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] query(byte[] json) {
+        QueryParam queryParam = JsonHelper.fromJson(json, QueryParam.class);
+        return JsonHelper.toJsonBytes(query(queryParam));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void query(InputStream json, OutputStream out) throws IOException {
+        QueryParam queryParam = JsonHelper.fromJson(json, QueryParam.class);
+        JsonHelper.toJson(query(queryParam), out);
+    }
+
     @Override
     public RefundResult refund(RefundParam refundParam) {
         ResultBuilder resultBuilder = new ResultBuilder(RefundResult.class);
@@ -167,6 +324,29 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] refund(byte[] json) {
+        RefundParam refundParam = JsonHelper.fromJson(json, RefundParam.class);
+        return JsonHelper.toJsonBytes(refund(refundParam));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void refund(InputStream json, OutputStream out) throws IOException {
+        RefundParam refundParam = JsonHelper.fromJson(json, RefundParam.class);
+        JsonHelper.toJson(refund(refundParam), out);
+    }
+
     @Override
     public RefundResult resolveRefundResult(Notification notification) {
         ResultBuilder resultBuilder = new ResultBuilder(RefundResult.class);
@@ -182,4 +362,135 @@ public class BankAdaptor implements AsyncPay, SyncPay, Query, Refund {
         return resultBuilder.toJson();
     }
 
+    /**
+     * UTF-8编码的JSON入参,返回UTF-8编码的JSON结果
+     * 
+     * @param json
+     * @return
+     */
+    public byte[] resolveRefundResult(byte[] json) {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        return JsonHelper.toJsonBytes(resolveRefundResult(notification));
+    }
+
+    /**
+     * 从输入流读取UTF-8编码的JSON入参,结果以UTF-8编码的JSON写入输出流
+     * 
+     * @param json
+     * @param out
+     * @throws IOException
+     */
+    public void resolveRefundResult(InputStream json, OutputStream out) throws IOException {
+        Notification notification = JsonHelper.fromJson(json, Notification.class);
+        JsonHelper.toJson(resolveRefundResult(notification), out);
+    }
+
+    /**
+     * 异步组装支付请求参数
+     * 
+     * @param asyncPayParam
+     * @return
+     */
+    public CompletableFuture<PrePayResult> prePayAsync(final AsyncPayParam asyncPayParam) {
+        return supplyAsync(() -> prePay(asyncPayParam), PrePayResult.class);
+    }
+
+    /**
+     * 异步解析支付结果通知
+     * 
+     * @param notification
+     * @return
+     */
+    public CompletableFuture<AsyncPayResult> resolveAsyncPayResultAsync(final Notification notification) {
+        return supplyAsync(() -> resolveAsyncPayResult(notification), AsyncPayResult.class);
+    }
+
+    /**
+     * 异步获取授权码
+     * 
+     * @param authCodeParam
+     * @return
+     */
+    public CompletableFuture<AuthCodeResult> getAuthCodeAsync(AuthCodeParam authCodeParam) {
+        return allInOneAsync(new ResultBuilder(AuthCodeResult.class), authCodeParam);
+    }
+
+    /**
+     * 异步同步支付
+     * 
+     * @param syncPayParam
+     * @return
+     */
+    public CompletableFuture<SyncPayResult> payAsync(SyncPayParam syncPayParam) {
+        return allInOneAsync(new ResultBuilder(SyncPayResult.class), syncPayParam);
+    }
+
+    /**
+     * 异步解析同步支付结果
+     * 
+     * @param notification
+     * @return
+     */
+    public CompletableFuture<SyncPayResult> resolveSyncPayResultAsync(final Notification notification) {
+        return supplyAsync(() -> resolveSyncPayResult(notification), SyncPayResult.class);
+    }
+
+    /**
+     * 异步查询,批量查询的明细在执行器中并发执行
+     * 
+     * @param queryParam
+     * @return
+     */
+    public CompletableFuture<QueryResult> queryAsync(final QueryParam queryParam) {
+        if (ServiceType.BATCH_QUERY.equals(queryParam.getServiceType())) {
+            return batchAllInOneAsync(new ResultBuilder(QueryResult.class), queryParam);
+        }
+        return allInOneAsync(new ResultBuilder(QueryResult.class), queryParam);
+    }
+
+    /**
+     * 异步退款,批量退款的明细在执行器中并发执行
+     * 
+     * @param refundParam
+     * @return
+     */
+    public CompletableFuture<RefundResult> refundAsync(final RefundParam refundParam) {
+        if (ServiceType.BATCH_REFUND.equals(refundParam.getServiceType())) {
+            return batchAllInOneAsync(new ResultBuilder(RefundResult.class), refundParam);
+        }
+        return allInOneAsync(new ResultBuilder(RefundResult.class), refundParam);
+    }
+
+    /**
+     * 异步解析退款结果
+     * 
+     * @param notification
+     * @return
+     */
+    public CompletableFuture<RefundResult> resolveRefundResultAsync(final Notification notification) {
+        return supplyAsync(() -> resolveRefundResult(notification), RefundResult.class);
+    }
+
+    // 执行器(隔离舱)已满时以通信失败的结果完成,与单笔请求的异步处理一致
+    private <T extends Result> CompletableFuture<T> supplyAsync(Supplier<T> supplier,
+            Class<? extends Result> resultClass) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, handler.getExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(new ResultBuilder(resultClass).occurCommunicationException(
+                    e.getMessage()).<T> create());
+        }
+    }
+
+    private <T extends Result> CompletableFuture<T> allInOneAsync(final ResultBuilder resultBuilder,
+            Parameter parameter) {
+        return handler.handleAllInOneAsync(resultBuilder, parameter).thenApply(v -> resultBuilder.<T> create());
+    }
+
+    private <T extends Result> CompletableFuture<T> batchAllInOneAsync(final ResultBuilder resultBuilder,
+            Parameter parameter) {
+        return handler.handleBatchAllInOneAsync(resultBuilder, parameter).thenApply(
+                v -> resultBuilder.<T> create());
+    }
+
 }
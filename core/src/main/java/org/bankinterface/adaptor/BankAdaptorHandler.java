@@ -15,7 +15,13 @@
  */
 package org.bankinterface.adaptor;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.bankinterface.builder.ResultBuilder;
+import org.bankinterface.enums.ServiceType;
 import org.bankinterface.param.Notification;
 import org.bankinterface.param.Parameter;
 
@@ -58,4 +64,60 @@ public interface BankAdaptorHandler {
      */
     public void handleBatchAllInOne(ResultBuilder resultBuilder, Parameter parameter);
 
+    /**
+     * 批量请求是否以单个请求发送,默认逐笔发送明细.
+     * 重写{@link #handleBatchAllInOne(ResultBuilder, Parameter)}以单个请求发送批量请求时应同时重写本方法
+     * 
+     * @param serviceType 批量服务类型
+     * @return
+     */
+    public default boolean isBatchAllInOne(ServiceType serviceType) {
+        return false;
+    }
+
+    /**
+     * 异步处理完整的请求,默认在执行器中执行{@link #handleAllInOne(ResultBuilder, Parameter)},
+     * 执行器拒绝时请求未发送,以通信失败完成
+     * 
+     * @param resultBuilder
+     * @param parameter
+     * @return 处理完成(结果已写入resultBuilder)时完成
+     */
+    public default CompletableFuture<Void> handleAllInOneAsync(final ResultBuilder resultBuilder,
+            final Parameter parameter) {
+        try {
+            return CompletableFuture.runAsync(() -> handleAllInOne(resultBuilder, parameter), getExecutor());
+        } catch (RejectedExecutionException e) {
+            resultBuilder.occurCommunicationException(e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 异步批量处理完整的请求,默认在执行器中执行{@link #handleBatchAllInOne(ResultBuilder, Parameter)},
+     * 执行器拒绝时请求未发送,以通信失败完成
+     * 
+     * @param resultBuilder
+     * @param parameter
+     * @return 处理完成(结果已写入resultBuilder)时完成
+     */
+    public default CompletableFuture<Void> handleBatchAllInOneAsync(final ResultBuilder resultBuilder,
+            final Parameter parameter) {
+        try {
+            return CompletableFuture.runAsync(() -> handleBatchAllInOne(resultBuilder, parameter), getExecutor());
+        } catch (RejectedExecutionException e) {
+            resultBuilder.occurCommunicationException(e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 异步操作使用的执行器
+     * 
+     * @return
+     */
+    public default Executor getExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
 }
@@ -15,14 +15,36 @@
  */
 package org.bankinterface.adaptor;
 
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.bankinterface.bank.BaseBank;
 import org.bankinterface.builder.ResultBuilder;
-import org.bankinterface.config.BankConfig;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.exception.CircuitOpenException;
 import org.bankinterface.exception.ConfigException;
 import org.bankinterface.exception.ConversionException;
 import org.bankinterface.exception.HttpClientException;
@@ -30,8 +52,26 @@ import org.bankinterface.exception.SignVerifyException;
 import org.bankinterface.exception.ValidationException;
 import org.bankinterface.param.Notification;
 import org.bankinterface.param.Parameter;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.param.RefundParam;
+import org.bankinterface.plan.ExecutionPlan;
+import org.bankinterface.plan.FieldSlot;
+import org.bankinterface.resilience.AdaptiveTimeout;
+import org.bankinterface.resilience.AdaptiveTimeoutPolicy;
+import org.bankinterface.resilience.CircuitBreaker;
+import org.bankinterface.resilience.CircuitBreakerPolicy;
+import org.bankinterface.resilience.HedgePolicy;
+import org.bankinterface.resilience.Hedger;
+import org.bankinterface.resilience.RetryBudget;
+import org.bankinterface.resilience.RetryPolicy;
+import org.bankinterface.result.Result;
 import org.bankinterface.signer.Signer;
 import org.bankinterface.util.HttpClient;
+import org.bankinterface.util.HttpConnectionManager;
+import org.bankinterface.util.HttpEngine;
+import org.bankinterface.util.HttpRequest;
+import org.bankinterface.util.PropertyAccessorFactory;
+import org.bankinterface.util.ThreadUtil;
 import org.bankinterface.util.Utils;
 import org.bankinterface.verifier.Verifier;
 import org.slf4j.Logger;
@@ -43,8 +83,32 @@ import org.slf4j.LoggerFactory;
  */
 public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
     private static final Logger logger = LoggerFactory.getLogger(DefaultBankAdaptorHandler.class);
+    /** 默认批量请求并发数 */
+    public static final int DEFAULT_BATCH_CONCURRENCY = 8;
     private final BaseBank bank;
     private final String bankName;
+    private volatile Executor executor;
+    private volatile Semaphore batchPermits;
+    // 等待批量许可的明细,同一支付机构的所有批量请求共享
+    private final Queue<BatchItemTask> pendingBatchItems = new ConcurrentLinkedQueue<BatchItemTask>();
+    private volatile StageListener stageListener;
+    private volatile HttpConnectionManager connectionManager;
+    private volatile HttpEngine httpEngine;
+    private volatile CircuitBreakerPolicy circuitBreakerPolicy;
+    // 按请求地址的熔断器
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers =
+            new ConcurrentHashMap<String, CircuitBreaker>();
+    // 按服务类型索引的自适应超时策略
+    private volatile AdaptiveTimeoutPolicy[] timeoutPolicies = new AdaptiveTimeoutPolicy[ServiceType.values().length];
+    // 按服务类型及请求地址的自适应超时
+    private final ConcurrentMap<String, AdaptiveTimeout> adaptiveTimeouts =
+            new ConcurrentHashMap<String, AdaptiveTimeout>();
+    private volatile HedgePolicy hedgePolicy;
+    // 按请求地址的对冲器
+    private final ConcurrentMap<String, Hedger> hedgers = new ConcurrentHashMap<String, Hedger>();
+    // 按服务类型索引的重试策略
+    private volatile RetryPolicy[] retryPolicies = new RetryPolicy[ServiceType.values().length];
+    private volatile RetryBudget retryBudget = new RetryBudget();
 
     public DefaultBankAdaptorHandler(BaseBank bank) {
         if (bank == null) {
@@ -53,6 +117,8 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
         }
         this.bank = bank;
         bankName = bank.getClass().getName();
+        executor = DefaultExecutorHolder.EXECUTOR;
+        batchPermits = new Semaphore(DEFAULT_BATCH_CONCURRENCY);
     }
 
     /**
@@ -67,61 +133,54 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
      */
     protected RequestParameters convertParameter(Parameter parameter) throws ConfigException, ValidationException,
             ConversionException, SignVerifyException {
-        // 获取支付机构请求报文处理配置
-        BankConfig config = bank.getBankConfig(parameter.getServiceVersion());
-        String type = config.getConfigType(parameter.getServiceType(), false);
-        Map<String, String> defaultMap, mappingMap, validatorMap, converterMap;
-        defaultMap = config.getDefaultValue(type);
-        mappingMap = config.getMapping(type);
-        validatorMap = config.getValidator(type);
-        converterMap = config.getConverter(type);
+        return convertParameter(parameter, StageTimings.NONE);
+    }
+
+    /**
+     * 将请求参数按照支付机构相应规则进行转换,并记录各阶段耗时.
+     * 
+     * @param parameter
+     * @param timings
+     * @return
+     * @throws ConfigException
+     * @throws ValidationException
+     * @throws ConversionException
+     * @throws SignVerifyException
+     */
+    protected RequestParameters convertParameter(Parameter parameter, StageTimings timings) throws ConfigException,
+            ValidationException, ConversionException, SignVerifyException {
+        long start = timings.start();
+        // 获取支付机构请求报文执行计划
+        ExecutionPlan plan = bank.getExecutionPlan(parameter.getServiceVersion(), parameter.getServiceType(), false);
 
         // 依据规则进行验证
-        if (validatorMap != null) {
-            String validator, mapping, defaultValue;
-            Object vaule;
-            for (String key : validatorMap.keySet()) {
-                // 获得报文验证方法名
-                validator = validatorMap.get(key);
-                // 获得报文默认值
-                defaultValue = defaultMap.get(key);
-                // 获得报文对应入参名称
-                mapping = mappingMap.get(key);
-                // 获得入参值
-                vaule = getParameterValue(parameter, mapping, defaultValue);
-                // 用指定的验证方法验证
-                bank.getValidator(validator).validate(mapping, vaule, defaultValue);
-            }
+        FieldSlot[] slots = plan.getValidatorSlots();
+        FieldSlot slot;
+        for (int i = 0; i < slots.length; i++) {
+            slot = slots[i];
+            // 获得入参值并用指定的验证方法验证
+            slot.validate(getParameterValue(parameter, slot));
         }
+        start = timings.lap(Stage.VALIDATE, start);
 
         // 依据规则进行转换
-        Map<String, String> convertedMap = new HashMap<String, String>(defaultMap);
-        if (converterMap != null) {
-            String converter, mapping, defaultValue, template;
-            Object vaule;
-            Map<String, String> templateMap = config.getTemplate(type);
-            for (String key : converterMap.keySet()) {
-                // 获得报文转换方法名
-                converter = converterMap.get(key);
-                // 获得报文对应入参名称
-                mapping = mappingMap.get(key);
-                // 获得报文默认值
-                defaultValue = defaultMap.get(key);
-                // 获得入参值
-                vaule = getParameterValue(parameter, mapping, defaultValue);
-                // 获得转换模板
-                template = templateMap.get(key);
-                // 转换值替换默认值
-                convertedMap.put(key, (String) bank.getConverter(converter).convert(mapping, vaule, template));
-            }
+        Map<String, String> convertedMap = new HashMap<String, String>(plan.getDefaultValue());
+        slots = plan.getConverterSlots();
+        for (int i = 0; i < slots.length; i++) {
+            slot = slots[i];
+            // 获得入参值,转换值替换默认值
+            Object vaule = getParameterValue(parameter, slot);
+            convertedMap.put(slot.getKey(), (String) slot.convert(vaule));
         }
+        start = timings.lap(Stage.CONVERT, start);
 
         // 依据规则进行签名
-        String signatureKey = config.getSignatureKey(type);
+        String signatureKey = plan.getSignatureKey();
         if (!Utils.isEmpty(signatureKey)) {
-            Signer signer = bank.getSigner(config.getSignerOrVerifier(type));
+            Signer signer = plan.getSigner();
             convertedMap.put(signatureKey,
-                    signer.sign(convertedMap, config.getSignedField(type), config.getJoinStyle(type), parameter));
+                    signer.sign(convertedMap, plan.getSignedField(), plan.getJoinStyle(), parameter));
+            timings.lap(Stage.SIGN, start);
         }
 
         return new RequestParameters(parameter, convertedMap);
@@ -138,13 +197,17 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
      */
     protected Map<String, String> verifyNotification(Notification notification) throws ConfigException,
             ConversionException, SignVerifyException {
-        // 获取支付机构请求报文处理配置
-        BankConfig config = bank.getBankConfig(notification.getServiceVersion());
-        String type = config.getConfigType(notification.getServiceType(), true);
-        Verifier verifier = bank.getVerifier(config.getSignerOrVerifier(type));
-        // 验签并解密
-        return verifier.verify(config.getSignedField(type), config.getJoinStyle(type), config.getSignatureKey(type),
-                notification);
+        // 获取支付机构结果报文执行计划
+        ExecutionPlan plan = bank.getExecutionPlan(notification.getServiceVersion(), notification.getServiceType(),
+                true);
+        Verifier verifier = plan.getVerifier();
+        // 验签并解密,有原始字节时直接交给验签服务
+        byte[] rawContent = notification.getRawContent();
+        if (rawContent != null) {
+            return verifier.verify(plan.getSignedField(), plan.getJoinStyle(), plan.getSignatureKey(), notification,
+                    rawContent);
+        }
+        return verifier.verify(plan.getSignedField(), plan.getJoinStyle(), plan.getSignatureKey(), notification);
     }
 
     /**
@@ -159,76 +222,515 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
      */
     protected Map<String, Object> buildResult(Map<String, String> verifiedMap, Parameter parameter)
             throws ConfigException, ConversionException, ValidationException {
-        // 获取支付机构请求报文处理配置
-        BankConfig config = bank.getBankConfig(parameter.getServiceVersion());
-        String type = config.getConfigType(parameter.getServiceType(), true);
-        Map<String, String> defaultMap, mappingMap, validatorMap, converterMap;
-        defaultMap = config.getDefaultValue(type);
-        mappingMap = config.getMapping(type);
-        validatorMap = config.getValidator(type);
-        converterMap = config.getConverter(type);
+        // 获取支付机构结果报文执行计划
+        ExecutionPlan plan = bank.getExecutionPlan(parameter.getServiceVersion(), parameter.getServiceType(), true);
 
         // 依据规则进行验证
-        if (validatorMap != null) {
-            String validator, mapping, defaultValue, value;
-            for (String key : validatorMap.keySet()) {
-                // 获得报文验证方法名
-                validator = validatorMap.get(key);
-                // 获得报文对应结果名称
-                mapping = mappingMap.get(key);
-                // 获得报文默认值
-                defaultValue = defaultMap.get(key);
-                // 获得原始结果值
-                value = verifiedMap.get(mapping);
-                // 用指定的验证方法验证
-                bank.getValidator(validator).validate(mapping, validator, value, defaultValue);
-            }
+        FieldSlot[] slots = plan.getValidatorSlots();
+        FieldSlot slot;
+        for (int i = 0; i < slots.length; i++) {
+            slot = slots[i];
+            // 获得原始结果值并用指定的验证方法验证
+            slot.validate(verifiedMap.get(slot.getMapping()));
         }
 
         // 依据规则进行转换
         Map<String, Object> convertedMap = new HashMap<String, Object>(verifiedMap);
-        if (converterMap != null) {
-            String converter, mapping, template, value;
-            Map<String, String> templateMap = config.getTemplate(type);
-            for (String key : converterMap.keySet()) {
-                // 获得报文转换方法名
-                converter = converterMap.get(key);
-                // 获得报文对应结果名称
-                mapping = mappingMap.get(key);
-                // 获得转换模板
-                template = templateMap.get(key);
-                // 获得原始结果值
-                value = verifiedMap.get(mapping);
-                // 用指定的转换方式转换
-                convertedMap.put(key, bank.getConverter(converter).convert(mapping, value, template));
-            }
+        slots = plan.getConverterSlots();
+        for (int i = 0; i < slots.length; i++) {
+            slot = slots[i];
+            // 获得原始结果值并用指定的转换方式转换
+            convertedMap.put(slot.getKey(), slot.convert(verifiedMap.get(slot.getMapping())));
         }
 
         return convertedMap;
     }
 
     /**
-     * 发送请求并获得结果报文
+     * 发送请求并获得结果报文,配置了HTTP/2且设置了HTTP引擎时由引擎发送并等待结果
      * 
      * @param requestParameters
      * @return
      * @throws HttpClientException
      */
     protected String sendHttpRequest(RequestParameters requestParameters) throws HttpClientException {
+        HttpClient httpClient = newHttpClient(requestParameters);
+        if (httpEngine != null && HttpRequest.HTTP_2.equalsIgnoreCase(requestParameters.httpVersion)) {
+            return await(httpClient.postAsync());
+        }
+        return httpClient.post();
+    }
+
+    private static String await(CompletableFuture<String> future) throws HttpClientException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpClientException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpClientException) {
+                throw (HttpClientException) e.getCause();
+            }
+            throw new HttpClientException("Send request Error!", e);
+        }
+    }
+
+    /**
+     * 异步发送请求并获得结果报文,设置了HTTP引擎时由引擎非阻塞发送,否则在当前线程中同步发送
+     * 
+     * @param requestParameters
+     * @return
+     */
+    protected CompletableFuture<String> sendHttpRequestAsync(RequestParameters requestParameters) {
+        if (httpEngine != null) {
+            return newHttpClient(requestParameters).postAsync();
+        }
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        try {
+            future.complete(sendHttpRequest(requestParameters));
+        } catch (HttpClientException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 发送请求,服务类型设置了重试策略时通信失败后在重试预算内退避重试
+     * 
+     * @param requestParameters
+     * @return
+     * @throws HttpClientException 通信失败(重试用尽)或熔断中
+     */
+    private String send(RequestParameters requestParameters) throws HttpClientException {
+        RetryPolicy policy = getRetryPolicy(requestParameters.serviceType);
+        if (policy == null) {
+            return sendOnce(requestParameters);
+        }
+        RetryBudget budget = retryBudget;
+        budget.onRequest();
+        for (int retries = 0;; retries++) {
+            try {
+                return sendOnce(requestParameters);
+            } catch (HttpClientException e) {
+                if (!shouldRetry(policy, budget, retries, e)) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(policy.getBackoffMillis(retries));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<String> sendAsync(RequestParameters requestParameters) {
+        RetryPolicy policy = getRetryPolicy(requestParameters.serviceType);
+        if (policy == null) {
+            return sendOnceAsync(requestParameters);
+        }
+        RetryBudget budget = retryBudget;
+        budget.onRequest();
+        CompletableFuture<String> result = new CompletableFuture<String>();
+        retryAsync(requestParameters, policy, budget, 0, null, result);
+        return result;
+    }
+
+    // 发送一次,失败且可重试时退避后在执行器中重试.重试被拒绝时以上一次已发送请求的失败结束
+    private void retryAsync(final RequestParameters requestParameters, final RetryPolicy policy,
+            final RetryBudget budget, final int retries, final Throwable lastFailure,
+            final CompletableFuture<String> result) {
+        CompletableFuture<String> response;
+        try {
+            response = sendOnceAsync(requestParameters);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(lastFailure != null && e instanceof RejectedExecutionException ? lastFailure
+                    : e);
+            return;
+        }
+        response.whenComplete((r, e) -> {
+            if (e == null) {
+                result.complete(r);
+                return;
+            }
+            final Throwable cause = unwrap(e);
+            if (lastFailure != null && cause instanceof RejectedExecutionException) {
+                result.completeExceptionally(lastFailure);
+                return;
+            }
+            if (!shouldRetry(policy, budget, retries, cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            final Executor executor = this.executor;
+            try {
+                DefaultSchedulerHolder.SCHEDULER.schedule(() -> {
+                    try {
+                        executor.execute(() -> retryAsync(requestParameters, policy, budget, retries + 1, cause,
+                                result));
+                    } catch (RejectedExecutionException ex) {
+                        result.completeExceptionally(cause);
+                    }
+                }, policy.getBackoffMillis(retries), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    // 熔断中的请求不重试,重试需在次数及预算之内
+    private static boolean shouldRetry(RetryPolicy policy, RetryBudget budget, int retries, Throwable e) {
+        return e instanceof HttpClientException && !(e instanceof CircuitOpenException)
+                && retries + 1 < policy.getMaxAttempts() && budget.tryRetry();
+    }
+
+    /**
+     * 经熔断器发送请求,按自适应超时设置读超时,查询请求按对冲策略对冲,均未设置时直接发送
+     * 
+     * @param requestParameters
+     * @return
+     * @throws HttpClientException 通信失败或熔断中
+     */
+    private String sendOnce(RequestParameters requestParameters) throws HttpClientException {
+        CircuitBreaker breaker = getCircuitBreaker(requestParameters.requestUrl);
+        AdaptiveTimeout timeout = getAdaptiveTimeout(requestParameters);
+        Hedger hedger = getHedger(requestParameters);
+        if (breaker == null && timeout == null && hedger == null) {
+            return sendHttpRequest(requestParameters);
+        }
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new CircuitOpenException("Circuit open: " + breaker.getName());
+        }
+        if (timeout != null) {
+            requestParameters.readTimeout = timeout.getReadTimeout();
+        }
+        long begin = System.nanoTime();
+        boolean failed = true;
+        try {
+            String response = hedger == null ? sendHttpRequest(requestParameters) : await(sendHedged(
+                    requestParameters, hedger));
+            failed = false;
+            return response;
+        } finally {
+            observe(breaker, timeout, requestParameters, failed, elapsedMillis(begin));
+        }
+    }
+
+    private CompletableFuture<String> sendOnceAsync(final RequestParameters requestParameters) {
+        final CircuitBreaker breaker = getCircuitBreaker(requestParameters.requestUrl);
+        final AdaptiveTimeout timeout = getAdaptiveTimeout(requestParameters);
+        final Hedger hedger = getHedger(requestParameters);
+        if (breaker == null && timeout == null && hedger == null) {
+            return sendHttpRequestAsync(requestParameters);
+        }
+        if (breaker != null && !breaker.tryAcquire()) {
+            CompletableFuture<String> rejected = new CompletableFuture<String>();
+            rejected.completeExceptionally(new CircuitOpenException("Circuit open: " + breaker.getName()));
+            return rejected;
+        }
+        if (timeout != null) {
+            requestParameters.readTimeout = timeout.getReadTimeout();
+        }
+        final long begin = System.nanoTime();
+        CompletableFuture<String> response;
+        try {
+            response = hedger == null ? sendHttpRequestAsync(requestParameters) : sendHedged(requestParameters,
+                    hedger);
+        } catch (RuntimeException e) {
+            observe(breaker, timeout, requestParameters, true, elapsedMillis(begin));
+            throw e;
+        }
+        return response.whenComplete((r, e) -> observe(breaker, timeout, requestParameters, e != null,
+                elapsedMillis(begin)));
+    }
+
+    /**
+     * 发送对冲请求:等待对冲器给出的时间后仍无响应且预算充足时,向备用地址(未配置时为原地址)再发送一次,
+     * 取先成功者,取消另一个.两次均失败时以后失败者的异常结束.
+     * 两次请求均经HTTP引擎或在对冲线程池中发送,不占用当前线程及执行器(隔离舱)
+     * 
+     * @param requestParameters
+     * @param hedger
+     * @return 对冲等待时间加单次请求的连接及读超时后仍无结果时以超时结束
+     */
+    private CompletableFuture<String> sendHedged(final RequestParameters requestParameters, final Hedger hedger) {
+        final CompletableFuture<String> result = new CompletableFuture<String>();
+        final CompletableFuture<String> primary = attempt(requestParameters);
+        if (primary == null) {
+            // 对冲线程池已满,请求未发送
+            result.completeExceptionally(new RejectedExecutionException("Hedge executor is full"));
+            return result;
+        }
+        hedger.onRequest();
+        final long begin = System.nanoTime();
+        final AtomicReference<CompletableFuture<String>> hedge = new AtomicReference<CompletableFuture<String>>();
+        primary.whenComplete((r, e) -> {
+            if (e == null) {
+                if (result.complete(r)) {
+                    hedger.onResponse(elapsedMillis(begin), false);
+                }
+            } else {
+                CompletableFuture<String> other = hedge.get();
+                if (other == null || other.isCompletedExceptionally()) {
+                    result.completeExceptionally(unwrap(e));
+                }
+            }
+        });
+
+        long delay = hedger.getDelayMillis();
+        if (delay >= 0 && !result.isDone()) {
+            final ScheduledFuture<?> timer = DefaultSchedulerHolder.SCHEDULER.schedule(() -> {
+                if (result.isDone() || !hedger.tryHedge()) {
+                    return;
+                }
+                CompletableFuture<String> second = attempt(requestParameters.forHedge());
+                if (second == null) {
+                    return;
+                }
+                hedge.set(second);
+                second.whenComplete((r, e) -> {
+                    if (e == null) {
+                        if (result.complete(r)) {
+                            hedger.onResponse(elapsedMillis(begin), true);
+                        }
+                    } else if (primary.isCompletedExceptionally()) {
+                        result.completeExceptionally(unwrap(e));
+                    }
+                });
+            }, delay, TimeUnit.MILLISECONDS);
+            result.whenComplete((r, e) -> timer.cancel(false));
+        }
+        int readTimeout = requestParameters.readTimeout > 0 ? requestParameters.readTimeout
+                : HttpClient.DEFAULT_TIMEOUT;
+        final ScheduledFuture<?> deadline = DefaultSchedulerHolder.SCHEDULER.schedule(
+                () -> result.completeExceptionally(new HttpClientException("Hedged request timed out")), Math.max(
+                        delay, 0) + HttpClient.DEFAULT_TIMEOUT + readTimeout, TimeUnit.MILLISECONDS);
+
+        // 取消未完成的一方,经HTTP引擎发送的请求随之中止,在线程池中发送的请求结果被丢弃
+        result.whenComplete((r, e) -> {
+            deadline.cancel(false);
+            primary.cancel(true);
+            CompletableFuture<String> second = hedge.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    // 单次发送,设置了HTTP引擎时非阻塞发送,否则在对冲线程池中发送,被拒绝时返回null
+    private CompletableFuture<String> attempt(final RequestParameters requestParameters) {
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        if (httpEngine != null) {
+            try {
+                return sendHttpRequestAsync(requestParameters);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+        try {
+            HedgeExecutorHolder.EXECUTOR.execute(() -> {
+                try {
+                    future.complete(sendHttpRequest(requestParameters));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    // 报告发送结果
+    private static void observe(CircuitBreaker breaker, AdaptiveTimeout timeout,
+            RequestParameters requestParameters, boolean failed, long elapsedMillis) {
+        if (breaker != null) {
+            breaker.onResult(failed, elapsedMillis);
+        }
+        if (timeout != null) {
+            timeout.record(elapsedMillis, failed, requestParameters.readTimeout);
+        }
+    }
+
+    private static long elapsedMillis(long begin) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    /**
+     * 获得指定请求地址的熔断器
+     * 
+     * @param requestUrl
+     * @return 未设置熔断策略时返回null
+     */
+    public CircuitBreaker getCircuitBreaker(String requestUrl) {
+        CircuitBreakerPolicy policy = circuitBreakerPolicy;
+        if (policy == null || requestUrl == null) {
+            return null;
+        }
+        CircuitBreaker breaker = circuitBreakers.get(requestUrl);
+        if (breaker == null) {
+            breaker = policy.newCircuitBreaker(bankName + " " + requestUrl);
+            CircuitBreaker existing = circuitBreakers.putIfAbsent(requestUrl, breaker);
+            if (existing != null) {
+                breaker = existing;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * 获得请求服务类型及请求地址对应的自适应超时
+     * 
+     * @param requestParameters
+     * @return 未设置该服务类型的自适应超时策略时返回null
+     */
+    protected AdaptiveTimeout getAdaptiveTimeout(RequestParameters requestParameters) {
+        ServiceType serviceType = requestParameters.serviceType;
+        if (serviceType == null || requestParameters.requestUrl == null) {
+            return null;
+        }
+        AdaptiveTimeoutPolicy policy = timeoutPolicies[serviceType.ordinal()];
+        if (policy == null) {
+            return null;
+        }
+        String key = serviceType + " " + requestParameters.requestUrl;
+        AdaptiveTimeout timeout = adaptiveTimeouts.get(key);
+        if (timeout == null) {
+            timeout = policy.newAdaptiveTimeout();
+            AdaptiveTimeout existing = adaptiveTimeouts.putIfAbsent(key, timeout);
+            if (existing != null) {
+                timeout = existing;
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * 获得请求地址对应的对冲器,只有单笔查询请求对冲
+     * 
+     * @param requestParameters
+     * @return 未设置对冲策略或非查询请求时返回null
+     */
+    protected Hedger getHedger(RequestParameters requestParameters) {
+        HedgePolicy policy = hedgePolicy;
+        if (policy == null || requestParameters.serviceType != ServiceType.QUERY
+                || requestParameters.requestUrl == null) {
+            return null;
+        }
+        Hedger hedger = hedgers.get(requestParameters.requestUrl);
+        if (hedger == null) {
+            hedger = policy.newHedger();
+            Hedger existing = hedgers.putIfAbsent(requestParameters.requestUrl, hedger);
+            if (existing != null) {
+                hedger = existing;
+            }
+        }
+        return hedger;
+    }
+
+    /**
+     * 按请求参数创建HTTP客户端
+     * 
+     * @param requestParameters
+     * @return
+     */
+    protected HttpClient newHttpClient(RequestParameters requestParameters) {
         HttpClient httpClient = new HttpClient();
+        HttpConnectionManager manager = connectionManager;
+        if (manager != null) {
+            // 从连接池借用长连接
+            httpClient.setConnectionManager(manager);
+            httpClient.setKeepAlive(true);
+        }
+        httpClient.setEngine(httpEngine);
         httpClient.setUrl(requestParameters.requestUrl);
         httpClient.setStreamCharset(requestParameters.charset);
+        httpClient.setHttpVersion(requestParameters.httpVersion);
+        if (requestParameters.readTimeout > 0) {
+            httpClient.setReadTimeout(requestParameters.readTimeout);
+        }
         httpClient.setParameters(requestParameters.parameters);
         // httpClient.setRawStream(requestParameters.rawStream);
         // 设置是否允许访问非授信URL
         // httpClient.setAllowUntrusted(requestParameters.allowUntrusted);
         // 设置客户端证书别名
         // httpClient.setClientCertificateAlias(requestParameters.clientCertAlias);
-        return httpClient.post();
+        return httpClient;
+    }
+
+    /**
+     * 验证结果报文并构建结果
+     * 
+     * @param resultBuilder
+     * @param parameter
+     * @param response
+     * @throws ConfigException
+     * @throws ValidationException
+     * @throws ConversionException
+     * @throws SignVerifyException
+     */
+    protected void resolveResponse(ResultBuilder resultBuilder, Parameter parameter, String response)
+            throws ConfigException, ValidationException, ConversionException, SignVerifyException {
+        Notification notification = new Notification(parameter);
+        notification.setContent(response);
+        resolveNotification(resultBuilder, notification, StageTimings.NONE);
+    }
+
+    /**
+     * 验证通知并构建结果,并记录各阶段耗时
+     * 
+     * @param resultBuilder
+     * @param notification
+     * @param timings
+     * @throws ConfigException
+     * @throws ValidationException
+     * @throws ConversionException
+     * @throws SignVerifyException
+     */
+    protected void resolveNotification(ResultBuilder resultBuilder, Notification notification, StageTimings timings)
+            throws ConfigException, ValidationException, ConversionException, SignVerifyException {
+        long start = timings.start();
+        Map<String, String> verifiedMap = verifyNotification(notification);
+        start = timings.lap(Stage.VERIFY, start);
+
+        Map<String, Object> resultMap = buildResult(verifiedMap, notification);
+        resultBuilder.populate(resultMap);
+        timings.lap(Stage.BUILD_RESULT, start);
+    }
+
+    /**
+     * 将处理过程中的异常转换为结果状态
+     * 
+     * @param resultBuilder
+     * @param e
+     */
+    protected void occurException(ResultBuilder resultBuilder, Throwable e) {
+        if (e instanceof ValidationException) {
+            resultBuilder.occurValidationException(e.getMessage());
+        } else if (e instanceof ConversionException) {
+            resultBuilder.occurConversionException(e.getMessage());
+        } else if (e instanceof HttpClientException) {
+            resultBuilder.occurCommunicationException(e.getMessage());
+        } else if (e instanceof SignVerifyException) {
+            resultBuilder.occurSignVerifyException(e.getMessage());
+        } else if (e instanceof RejectedExecutionException) {
+            // 执行器(隔离舱)已满,请求未发送
+            resultBuilder.occurCommunicationException(e.getMessage());
+        } else {
+            resultBuilder.occurUnkonwnException();
+            logger.error(bankName, e);
+        }
     }
 
     /**
-     * 获得指定请求的指定参数值,propertys用|分割可获得LinkedList结果集
+     * 获得指定请求的指定参数值,propertys用|分割可获得List结果集
      * 
      * @param parameter
      * @param propertys
@@ -238,89 +740,589 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
     protected Object getParameterValue(Parameter parameter, String propertys, String defaultValue) {
         Object result = null;
         try {
-            if (propertys.contains("|")) {
-                LinkedList<Object> list = new LinkedList<Object>();
-                for (String property : propertys.split("\\|")) {
-                    if (Utils.isEmpty(property)){
-                        continue;
-                    }
-                    list.add(PropertyUtils.getProperty(parameter, property));
-                }
-                result = list;
-            } else {
-                result = PropertyUtils.getProperty(parameter, propertys);
-            }
+            result = PropertyAccessorFactory.getAccessor(parameter.getClass(), propertys).get(parameter);
         } catch (Exception e) {
+            logger.debug(bankName + " get parameter " + propertys + " Error!", e);
         }
         return result == null ? defaultValue : result;
     }
 
+    /**
+     * 获得指定请求中槽位映射的参数值
+     * 
+     * @param parameter
+     * @param slot
+     * @return
+     */
+    protected Object getParameterValue(Parameter parameter, FieldSlot slot) {
+        Object result = null;
+        try {
+            result = slot.getValue(parameter);
+        } catch (Exception e) {
+            // 映射的属性不存在时读取器解析时已告警一次,读取异常按默认值处理,不在每次请求时告警
+            logger.debug(bankName + " get parameter " + slot.getMapping() + " Error!", e);
+        }
+        return result == null ? slot.getDefaultValue() : result;
+    }
+
     public void handlePrePay(ResultBuilder resultBuilder, Parameter parameter) {
+        StageTimings timings = newTimings(parameter);
         try {
-            RequestParameters requestParameters = convertParameter(parameter);
+            RequestParameters requestParameters = convertParameter(parameter, timings);
             resultBuilder.populate(requestParameters);
-        } catch (ValidationException e) {
-            resultBuilder.occurValidationException(e.getMessage());
-        } catch (ConversionException e) {
-            resultBuilder.occurConversionException(e.getMessage());
-        } catch (SignVerifyException e) {
-            resultBuilder.occurSignVerifyException(e.getMessage());
         } catch (Exception e) {
-            resultBuilder.occurUnkonwnException();
-            logger.error(bankName, e);
+            occurException(resultBuilder, e);
         }
+        complete(resultBuilder, timings);
     }
 
     public void handleAllInOne(ResultBuilder resultBuilder, Parameter parameter) {
+        StageTimings timings = newTimings(parameter);
         try {
-            RequestParameters requestParameters = convertParameter(parameter);
-            String response = sendHttpRequest(requestParameters);
+            RequestParameters requestParameters = convertParameter(parameter, timings);
+            long start = timings.start();
+            String response = send(requestParameters);
+            timings.lap(Stage.SEND, start);
+            resolveResponse(resultBuilder, parameter, response, timings);
+        } catch (Exception e) {
+            occurException(resultBuilder, e);
+        }
+        complete(resultBuilder, timings);
+    }
 
-            Notification notification = new Notification(parameter);
-            notification.setContent(response);
-            Map<String, String> verifiedMap = verifyNotification(notification);
+    public CompletableFuture<Void> handleAllInOneAsync(final ResultBuilder resultBuilder, final Parameter parameter) {
+        final Executor executor = this.executor;
+        final StageTimings timings = newTimings(parameter);
+        CompletableFuture<RequestParameters> converted;
+        try {
+            converted = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return convertParameter(parameter, timings);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            converted = new CompletableFuture<RequestParameters>();
+            converted.completeExceptionally(e);
+        }
+        return converted.thenCompose(requestParameters -> {
+            final long start = timings.start();
+            CompletableFuture<String> response = sendAsync(requestParameters).whenComplete(
+                    (r, e) -> timings.lap(Stage.SEND, start));
+            // 未同步完成的响应切回执行器,避免验签占用网络线程
+            return handOff(response, executor);
+        }).thenAccept(response -> {
+            try {
+                resolveResponse(resultBuilder, parameter, response, timings);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }).handle((result, e) -> {
+            if (e != null) {
+                occurException(resultBuilder, e instanceof CompletionException && e.getCause() != null ? e.getCause()
+                        : e);
+            }
+            complete(resultBuilder, timings);
+            return null;
+        });
+    }
 
-            Map<String, Object> resultMap = buildResult(verifiedMap, notification);
-            resultBuilder.populate(resultMap);
-        } catch (ValidationException e) {
-            resultBuilder.occurValidationException(e.getMessage());
-        } catch (ConversionException e) {
-            resultBuilder.occurConversionException(e.getMessage());
-        } catch (HttpClientException e) {
-            resultBuilder.occurCommunicationException(e.getMessage());
-        } catch (SignVerifyException e) {
-            resultBuilder.occurSignVerifyException(e.getMessage());
-        } catch (Exception e) {
-            resultBuilder.occurUnkonwnException();
-            logger.error(bankName, e);
+    // 请求已发送,执行器拒绝时在完成响应的线程中继续,不能当作未发送的拒绝处理
+    private static <T> CompletableFuture<T> handOff(CompletableFuture<T> response, Executor executor) {
+        if (response.isDone()) {
+            return response;
         }
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        response.whenComplete((r, e) -> {
+            Runnable task = () -> {
+                if (e == null) {
+                    result.complete(r);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                task.run();
+            }
+        });
+        return result;
     }
 
     public void handleNotification(ResultBuilder resultBuilder, Notification notification) {
+        StageTimings timings = newTimings(notification);
         try {
-            Map<String, String> verifiedMap = verifyNotification(notification);
-            Map<String, Object> resultMap = buildResult(verifiedMap, notification);
-            resultBuilder.populate(resultMap);
-        } catch (ValidationException e) {
-            resultBuilder.occurValidationException(e.getMessage());
-        } catch (ConversionException e) {
-            resultBuilder.occurConversionException(e.getMessage());
-        } catch (SignVerifyException e) {
-            resultBuilder.occurSignVerifyException(e.getMessage());
+            resolveNotification(resultBuilder, notification, timings);
         } catch (Exception e) {
-            resultBuilder.occurUnkonwnException();
-            logger.error(bankName, e);
+            occurException(resultBuilder, e);
         }
+        complete(resultBuilder, timings);
+    }
+
+    private void resolveResponse(ResultBuilder resultBuilder, Parameter parameter, String response,
+            StageTimings timings) throws ConfigException, ValidationException, ConversionException,
+            SignVerifyException {
+        Notification notification = new Notification(parameter);
+        notification.setContent(response);
+        resolveNotification(resultBuilder, notification, timings);
     }
 
+    // 未安装监听器时不计时
+    private StageTimings newTimings(Parameter parameter) {
+        if (stageListener == null) {
+            return StageTimings.NONE;
+        }
+        return new StageTimings(bankName, parameter.getServiceType(), true);
+    }
+
+    private void complete(ResultBuilder resultBuilder, StageTimings timings) {
+        StageListener listener = stageListener;
+        if (timings == StageTimings.NONE || listener == null) {
+            return;
+        }
+        timings.complete(resultBuilder.create().getStatus());
+        try {
+            listener.onCompleted(timings);
+        } catch (RuntimeException e) {
+            logger.warn(bankName + " stage listener Error!", e);
+        }
+    }
+
+    /**
+     * 批量处理完整的请求,等待全部明细完成.明细在执行器中处理,不应在执行器(隔离舱)线程中调用,
+     * 异步处理使用{@link #handleBatchAllInOneAsync(ResultBuilder, Parameter)}
+     */
     public void handleBatchAllInOne(ResultBuilder resultBuilder, Parameter parameter) {
-        throw new UnsupportedOperationException();
+        BatchItems batch = startBatch(resultBuilder, parameter);
+        if (batch == null) {
+            return;
+        }
+        try {
+            batch.populated.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 尚未开始的明细不再发送,以已完成的明细结束
+            if (batch.finished.complete(null)) {
+                logger.warn(bankName + " batch interrupted, " + batch.remaining.get() + " items not completed");
+            }
+            batch.populated.join();
+        } catch (ExecutionException e) {
+            logger.error(bankName, e);
+        }
+    }
+
+    /**
+     * 异步批量处理完整的请求,不占用等待明细的线程
+     * 
+     * @param resultBuilder
+     * @param parameter
+     * @return 全部明细完成(结果已写入resultBuilder)时完成
+     */
+    public CompletableFuture<Void> handleBatchAllInOneAsync(ResultBuilder resultBuilder, Parameter parameter) {
+        BatchItems batch = startBatch(resultBuilder, parameter);
+        return batch == null ? CompletableFuture.<Void> completedFuture(null) : batch.populated;
+    }
+
+    // 将明细排队并在批量许可内提交到执行器,全部完成时写入结果
+    private BatchItems startBatch(final ResultBuilder resultBuilder, Parameter parameter) {
+        List<? extends Parameter> items = getBatchItems(parameter);
+        if (Utils.isEmpty(items)) {
+            resultBuilder.occurValidationException("items is null");
+            return null;
+        }
+
+        int size = items.size();
+        final BatchItems batch = new BatchItems(resultBuilder.getResultClass(), size);
+        batch.populated = batch.finished.thenRun(() -> populateBatch(resultBuilder, batch));
+        for (int i = 0; i < size; i++) {
+            Parameter item;
+            try {
+                item = prepareBatchItem(parameter, items.get(i));
+            } catch (RuntimeException e) {
+                logger.error(bankName + " batch item " + i, e);
+                batch.complete(i, null);
+                continue;
+            }
+            pendingBatchItems.offer(new BatchItemTask(batch, item, i));
+        }
+        dispatchBatchItems();
+        return batch;
+    }
+
+    // 按支付机构的批量许可将排队的明细提交到执行器,每个许可对应一个处理明细的执行器线程
+    private void dispatchBatchItems() {
+        while (!pendingBatchItems.isEmpty()) {
+            Semaphore permits = batchPermits;
+            if (!permits.tryAcquire()) {
+                // 持有许可的明细完成后继续提交
+                return;
+            }
+            BatchItemTask task = pendingBatchItems.poll();
+            if (task == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(new BatchWorker(task, permits));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                task.reject(e);
+            }
+        }
+    }
+
+    private void populateBatch(ResultBuilder resultBuilder, BatchItems batch) {
+        int size = batch.results.length();
+        List<Result> itemResults = new ArrayList<Result>(size);
+        for (int i = 0; i < size; i++) {
+            Result result = batch.results.get(i);
+            if (result == null) {
+                // 失败,中断或尚未完成的明细
+                result = new ResultBuilder(batch.resultClass).occurUnkonwnException().create();
+            }
+            itemResults.add(result);
+        }
+        Map<String, Object> resultMap = new HashMap<String, Object>();
+        resultMap.put("items", itemResults);
+        resultBuilder.populate(resultMap);
+        RejectedExecutionException rejected = batch.rejected;
+        if (rejected != null && batch.rejectedCount.get() == size) {
+            // 执行器(隔离舱)已满,全部明细均未发送
+            resultBuilder.occurCommunicationException(rejected.getMessage());
+        }
+    }
+
+    /**
+     * 获得批量请求明细
+     * 
+     * @param parameter
+     * @return
+     */
+    protected List<? extends Parameter> getBatchItems(Parameter parameter) {
+        if (parameter instanceof QueryParam) {
+            return ((QueryParam) parameter).getItems();
+        } else if (parameter instanceof RefundParam) {
+            return ((RefundParam) parameter).getItems();
+        }
+        return null;
+    }
+
+    /**
+     * 将批量请求明细整理为单笔请求,未设置的服务类型,版本号及配置信息从批量请求继承.
+     * 在明细的副本上修改,调用方传入的明细不变
+     * 
+     * @param batch
+     * @param original
+     * @return
+     */
+    protected Parameter prepareBatchItem(Parameter batch, Parameter original) {
+        Parameter item = copyParameter(original);
+        ServiceType serviceType = item.getServiceType();
+        if (serviceType == null || serviceType == ServiceType.BATCH_QUERY
+                || serviceType == ServiceType.BATCH_REFUND) {
+            item.setServiceType(batch.getServiceType() == ServiceType.BATCH_REFUND ? ServiceType.REFUND
+                    : ServiceType.QUERY);
+        }
+        if (item.getServiceVersion() == null) {
+            item.setServiceVersion(batch.getServiceVersion());
+        }
+        if (Utils.isEmpty(item.getConfig())) {
+            item.setConfig(batch.getConfig());
+        }
+        return item;
+    }
+
+    // 浅复制请求参数
+    private static Parameter copyParameter(Parameter parameter) {
+        try {
+            Constructor<? extends Parameter> constructor = parameter.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            Parameter copy = constructor.newInstance();
+            PropertyUtils.copyProperties(copy, parameter);
+            return copy;
+        } catch (Exception e) {
+            throw new IllegalStateException("Copy " + parameter.getClass().getName() + " Error!", e);
+        }
+    }
+
+    /**
+     * 批量请求明细并发数,同一支付机构的所有批量请求共享,默认8
+     * 
+     * @param batchConcurrency
+     */
+    public void setBatchConcurrency(int batchConcurrency) {
+        if (batchConcurrency <= 0) {
+            throw new IllegalArgumentException("batchConcurrency must be positive");
+        }
+        this.batchPermits = new Semaphore(batchConcurrency);
+    }
+
+    /**
+     * 批量请求明细及异步处理的执行器,默认使用共享的守护线程池,支付机构配置了隔离舱时为隔离舱
+     * 
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * HTTP连接池,为null(默认)时每次请求使用HttpURLConnection,支付机构配置了连接池时为该机构的连接池
+     * 
+     * @param connectionManager
+     */
+    public void setConnectionManager(HttpConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    public HttpConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * 非阻塞HTTP引擎,设置后异步处理的网络阶段不再占用执行器线程,为null时同步发送
+     * 
+     * @param httpEngine
+     */
+    public void setHttpEngine(HttpEngine httpEngine) {
+        this.httpEngine = httpEngine;
+    }
+
+    public HttpEngine getHttpEngine() {
+        return httpEngine;
+    }
+
+    /**
+     * 熔断策略,按请求地址熔断,通信失败或慢调用比例过高时快速失败,为null(默认)时不熔断.
+     * 设置后重新统计
+     * 
+     * @param circuitBreakerPolicy
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+        circuitBreakers.clear();
+    }
+
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    /**
+     * 所有服务类型的自适应超时策略,按最近调用耗时计算各请求地址的读超时,为null(默认)时使用固定超时
+     * 
+     * @param adaptiveTimeoutPolicy
+     */
+    public void setAdaptiveTimeoutPolicy(AdaptiveTimeoutPolicy adaptiveTimeoutPolicy) {
+        AdaptiveTimeoutPolicy[] policies = new AdaptiveTimeoutPolicy[ServiceType.values().length];
+        Arrays.fill(policies, adaptiveTimeoutPolicy);
+        timeoutPolicies = policies;
+        adaptiveTimeouts.clear();
+    }
+
+    /**
+     * 指定服务类型的自适应超时策略,不同服务类型(如QUERY与SYNC_PAY)耗时分布不同时分别设置
+     * 
+     * @param serviceType
+     * @param adaptiveTimeoutPolicy 为null时该服务类型使用固定超时
+     */
+    public void setAdaptiveTimeoutPolicy(ServiceType serviceType, AdaptiveTimeoutPolicy adaptiveTimeoutPolicy) {
+        AdaptiveTimeoutPolicy[] policies = timeoutPolicies.clone();
+        policies[serviceType.ordinal()] = adaptiveTimeoutPolicy;
+        timeoutPolicies = policies;
+        adaptiveTimeouts.clear();
+    }
+
+    public AdaptiveTimeoutPolicy getAdaptiveTimeoutPolicy(ServiceType serviceType) {
+        return timeoutPolicies[serviceType.ordinal()];
+    }
+
+    /**
+     * 单笔查询的对冲策略,为null(默认)时不对冲.支付,退款及获取验证码等非只读请求从不对冲.
+     * 请求参数配置中的backupRequestUrl为对冲请求的备用地址
+     * 
+     * @param hedgePolicy
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        hedgers.clear();
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * 指定服务类型的重试策略,默认不重试.只应为幂等的服务类型(如QUERY,BATCH_QUERY)设置,
+     * 支付机构配置中的Retry区域在初始化时设置
+     * 
+     * @param serviceType
+     * @param retryPolicy 为null时该服务类型不重试
+     */
+    public void setRetryPolicy(ServiceType serviceType, RetryPolicy retryPolicy) {
+        RetryPolicy[] policies = retryPolicies.clone();
+        policies[serviceType.ordinal()] = retryPolicy;
+        retryPolicies = policies;
+    }
+
+    public RetryPolicy getRetryPolicy(ServiceType serviceType) {
+        return serviceType == null ? null : retryPolicies[serviceType.ordinal()];
+    }
+
+    /**
+     * 重试预算,所有服务类型的重试共享,默认重试数不超过请求数的{@link RetryBudget#DEFAULT_RATIO}
+     * 
+     * @param retryBudget
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        if (retryBudget == null) {
+            throw new IllegalArgumentException("retryBudget is null");
+        }
+        this.retryBudget = retryBudget;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * 处理阶段耗时监听器,为null时不计时
+     * 
+     * @param stageListener
+     */
+    public void setStageListener(StageListener stageListener) {
+        this.stageListener = stageListener;
+    }
+
+    public StageListener getStageListener() {
+        return stageListener;
+    }
+
+    // 一次批量请求的明细结果
+    private static class BatchItems {
+        private final Class<? extends Result>       resultClass;
+        private final AtomicReferenceArray<Result>  results;
+        private final AtomicInteger                 remaining;
+        private final AtomicInteger                 rejectedCount = new AtomicInteger();
+        // 全部明细完成或等待被中断
+        private final CompletableFuture<Void>       finished      = new CompletableFuture<Void>();
+        // 结果已写入
+        private CompletableFuture<Void>             populated;
+        private volatile RejectedExecutionException rejected;
+
+        BatchItems(Class<? extends Result> resultClass, int size) {
+            this.resultClass = resultClass;
+            this.results = new AtomicReferenceArray<Result>(size);
+            this.remaining = new AtomicInteger(size);
+        }
+
+        void complete(int index, Result result) {
+            if (result != null) {
+                results.set(index, result);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                finished.complete(null);
+            }
+        }
+    }
+
+    // 批量明细处理任务
+    private class BatchItemTask {
+        private final BatchItems batch;
+        private final Parameter  item;
+        private final int        index;
+
+        BatchItemTask(BatchItems batch, Parameter item, int index) {
+            this.batch = batch;
+            this.item = item;
+            this.index = index;
+        }
+
+        void process() {
+            Result result = null;
+            try {
+                // 等待已被中断的批量请求不再发送
+                if (!batch.finished.isDone()) {
+                    ResultBuilder itemBuilder = new ResultBuilder(batch.resultClass);
+                    handleAllInOne(itemBuilder, item);
+                    result = itemBuilder.create();
+                }
+            } catch (RuntimeException e) {
+                logger.error(bankName, e);
+            } finally {
+                batch.complete(index, result);
+            }
+        }
+
+        // 执行器拒绝,明细未发送
+        void reject(RejectedExecutionException e) {
+            batch.rejected = e;
+            batch.rejectedCount.incrementAndGet();
+            batch.complete(index, new ResultBuilder(batch.resultClass).occurCommunicationException(e.getMessage())
+                    .create());
+        }
+    }
+
+    // 持有一个批量许可的执行器任务,处理完明细后继续处理排队的明细,队列为空时释放许可
+    private class BatchWorker implements Runnable {
+        private final BatchItemTask first;
+        private final Semaphore     permits;
+
+        BatchWorker(BatchItemTask first, Semaphore permits) {
+            this.first = first;
+            this.permits = permits;
+        }
+
+        public void run() {
+            BatchItemTask task = first;
+            while (true) {
+                for (; task != null; task = pendingBatchItems.poll()) {
+                    task.process();
+                }
+                permits.release();
+                // 释放许可前排队的明细可能未取得许可,由本线程继续处理
+                if (pendingBatchItems.isEmpty() || !permits.tryAcquire()) {
+                    return;
+                }
+                task = pendingBatchItems.poll();
+            }
+        }
+    }
+
+    // 默认执行器
+    private static class DefaultExecutorHolder {
+        static final ExecutorService EXECUTOR = ThreadUtil.newExecutor("bankinterface-");
+    }
+
+    // 未设置HTTP引擎时对冲查询的执行器,主请求数为在途的对冲查询数,对冲数由对冲预算限制
+    private static class HedgeExecutorHolder {
+        static final ExecutorService EXECUTOR = ThreadUtil.newExecutor("bankinterface-hedge-");
+    }
+
+    // 对冲及重试定时器
+    private static class DefaultSchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                r -> ThreadUtil.newThread(r, "bankinterface-scheduler"));
     }
 
     @SuppressWarnings("serial")
     static class RequestParameters extends HashMap<String, Object>{
         String              requestUrl;
+        // 对冲请求的备用地址
+        String              backupRequestUrl;
         String              charset;
+        String              httpVersion;
+        ServiceType         serviceType;
+        // 读超时,0使用HttpClient默认值
+        int                 readTimeout;
         String              rawStream;
         String              clientCertAlias;
         boolean             allowUntrusted;
@@ -329,7 +1331,11 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
         private RequestParameters(Parameter parameter, Map<String, String> convertedMap) {
             Map<String, String> config = parameter.getConfig();
             requestUrl = config.get("requestUrl");
+            backupRequestUrl = config.get("backupRequestUrl");
             charset = config.get("charset");
+            // HTTP/1.1(默认)或HTTP/2
+            httpVersion = config.get("httpVersion");
+            serviceType = parameter.getServiceType();
             //clientCertAlias = config.get("clientCertAlias");
             //allowUntrusted = "Y".equals(config.get("allowUntrusted"));
             parameters = convertedMap;
@@ -337,6 +1343,20 @@ public class DefaultBankAdaptorHandler implements BankAdaptorHandler {
             put("charset", charset == null ? "UTF-8" : charset);
             put("parameters", parameters);
         }
+
+        /**
+         * 对冲请求的参数,有备用地址时发往备用地址
+         * 
+         * @return
+         */
+        RequestParameters forHedge() {
+            RequestParameters hedge = (RequestParameters) clone();
+            if (backupRequestUrl != null) {
+                hedge.requestUrl = backupRequestUrl;
+                hedge.put("requestUrl", backupRequestUrl);
+            }
+            return hedge;
+        }
     }
 
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bankinterface.builder.ResultBuilder;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.enums.TransactionType;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.result.QueryResult;
+import org.bankinterface.util.ThreadUtil;
+
+/**
+ * 单笔查询合并器.
+ * 
+ * <pre>
+ * 同一支付机构,同一服务版本,交易类型及商户配置的单笔查询在合并窗口内(或达到批量上限时)合并为一笔批量查询,
+ * 经{@link BankAdaptor#queryAsync(QueryParam)}发送,批量结果按明细顺序拆分后完成各调用方.
+ * 只有支付机构的批量查询以单个请求发送时({@link BankAdaptorHandler#isBatchAllInOne})才合并,可成倍减少请求数;
+ * 默认处理器逐笔发送批量明细,合并不减少请求数,查询直接逐笔发送.
+ * 非单笔查询不合并,直接发送.
+ * 合并以延迟换请求数:批次的第一笔查询最多多等待一个合并窗口,请求量低时宜缩短窗口或不使用合并器.
+ * 发送失败时该批次的全部调用方以异常完成.
+ * </pre>
+ */
+public class QueryCoalescer {
+    /** 默认批量上限 */
+    public static final int            DEFAULT_MAX_BATCH_SIZE = 50;
+    /** 默认合并窗口(毫秒) */
+    public static final long           DEFAULT_WINDOW_MILLIS  = 20;
+
+    private final BankAdaptor          bank;
+    private final int                  maxBatchSize;
+    private final long                 windowMillis;
+    // 合并中的批次,按合并条件索引
+    private final Map<BatchKey, Batch> pending                = new HashMap<BatchKey, Batch>();
+    private final AtomicLong           batches                = new AtomicLong();
+    private final AtomicLong           coalesced              = new AtomicLong();
+
+    public QueryCoalescer(BankAdaptor bank) {
+        this(bank, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param bank 支付机构
+     * @param maxBatchSize 批量上限,达到时立即发送
+     * @param windowMillis 合并窗口,自批次第一笔查询起计算
+     */
+    public QueryCoalescer(BankAdaptor bank, int maxBatchSize, long windowMillis) {
+        if (bank == null) {
+            throw new IllegalArgumentException("bank is null");
+        }
+        if (maxBatchSize <= 0 || windowMillis < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive and windowMillis not negative");
+        }
+        this.bank = bank;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 提交查询,支付机构支持以单个请求发送批量查询时单笔查询加入合并批次
+     * 
+     * @param queryParam
+     * @return 该笔查询的结果
+     */
+    public CompletableFuture<QueryResult> query(QueryParam queryParam) {
+        if (!ServiceType.QUERY.equals(queryParam.getServiceType()) || maxBatchSize == 1
+                || !bank.isBatchAllInOne(ServiceType.BATCH_QUERY)) {
+            return bank.queryAsync(queryParam);
+        }
+        CompletableFuture<QueryResult> future = new CompletableFuture<QueryResult>();
+        BatchKey key = new BatchKey(queryParam);
+        Batch full = null;
+        synchronized (pending) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                batch = new Batch(key);
+                pending.put(key, batch);
+                final Batch scheduled = batch;
+                batch.timer = TimerHolder.TIMER.schedule(new Runnable() {
+                    public void run() {
+                        flush(scheduled);
+                    }
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.params.add(queryParam);
+            batch.futures.add(future);
+            if (batch.params.size() >= maxBatchSize) {
+                pending.remove(key);
+                batch.timer.cancel(false);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    /**
+     * 已发送的批量查询数
+     * 
+     * @return
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * 经合并发送的单笔查询数
+     * 
+     * @return
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    // 合并窗口到期
+    private void flush(Batch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.key) != batch) {
+                // 已因达到上限发送
+                return;
+            }
+            pending.remove(batch.key);
+        }
+        send(batch);
+    }
+
+    // 发送失败(包括同步抛出的异常)时完成该批次的全部调用方,定时器线程中抛出的异常无人处理
+    private void send(final Batch batch) {
+        try {
+            doSend(batch);
+        } catch (RuntimeException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void doSend(final Batch batch) {
+        final int size = batch.params.size();
+        if (size == 1) {
+            bank.queryAsync(batch.params.get(0)).whenComplete((result, e) -> {
+                if (e != null) {
+                    batch.futures.get(0).completeExceptionally(e);
+                } else {
+                    batch.futures.get(0).complete(result);
+                }
+            });
+            return;
+        }
+        batches.incrementAndGet();
+        coalesced.addAndGet(size);
+        bank.queryAsync(batch.toBatchParam()).whenComplete((result, e) -> {
+            if (e != null) {
+                fail(batch, e);
+                return;
+            }
+            try {
+                split(batch, result);
+            } catch (RuntimeException ex) {
+                fail(batch, ex);
+            }
+        });
+    }
+
+    private static void split(Batch batch, QueryResult result) {
+        int size = batch.params.size();
+        List<QueryResult> items = result.getItems();
+        for (int i = 0; i < size; i++) {
+            if (items != null && items.size() == size && items.get(i) != null) {
+                batch.futures.get(i).complete(items.get(i));
+            } else {
+                // 批量查询整体失败,各笔沿用批量结果状态
+                QueryResult item = new ResultBuilder(QueryResult.class).create();
+                item.setStatus(result.getStatus());
+                item.setMessage(result.getMessage());
+                batch.futures.get(i).complete(item);
+            }
+        }
+    }
+
+    // 已完成的调用方不受影响
+    private static void fail(Batch batch, Throwable e) {
+        for (CompletableFuture<QueryResult> future : batch.futures) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    static final class Batch {
+        final BatchKey                             key;
+        final List<QueryParam>                     params  = new ArrayList<QueryParam>();
+        final List<CompletableFuture<QueryResult>> futures = new ArrayList<CompletableFuture<QueryResult>>();
+        ScheduledFuture<?>                         timer;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        QueryParam toBatchParam() {
+            QueryParam first = params.get(0);
+            QueryParam batchParam = TransactionType.REFUND.equals(first.getTransactionType()) ? QueryParam
+                    .batchRefundQueryParam() : QueryParam.batchPayQueryParam();
+            batchParam.setTransactionType(first.getTransactionType());
+            batchParam.setServiceId(first.getServiceId());
+            batchParam.setServiceVersion(first.getServiceVersion());
+            batchParam.setConfig(first.getConfig());
+            batchParam.setItems(new ArrayList<QueryParam>(params));
+            return batchParam;
+        }
+    }
+
+    // 合并条件:服务版本,交易类型及商户配置(商户号,请求地址等)均相同
+    static final class BatchKey {
+        private final String              serviceVersion;
+        private final TransactionType     transactionType;
+        private final Map<String, String> config;
+
+        BatchKey(QueryParam queryParam) {
+            this.serviceVersion = queryParam.getServiceVersion();
+            this.transactionType = queryParam.getTransactionType();
+            this.config = queryParam.getConfig();
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = serviceVersion == null ? 0 : serviceVersion.hashCode();
+            hash = hash * 31 + (transactionType == null ? 0 : transactionType.hashCode());
+            return hash * 31 + (config == null ? 0 : config.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return transactionType == other.transactionType
+                    && (serviceVersion == null ? other.serviceVersion == null : serviceVersion
+                            .equals(other.serviceVersion))
+                    && (config == null ? other.config == null : config.equals(other.config));
+        }
+    }
+
+    // 合并窗口定时器,所有合并器共享
+    private static class TimerHolder {
+        static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+                r -> ThreadUtil.newThread(r, "bankinterface-coalescer"));
+    }
+}
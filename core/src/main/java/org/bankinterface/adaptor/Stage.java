@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+/**
+ * 适配处理器的处理阶段
+ * 
+ */
+public enum Stage {
+
+    /** 入参验证 */
+    VALIDATE,
+    /** 入参转换 */
+    CONVERT,
+    /** 签名 */
+    SIGN,
+    /** 发送请求并等待结果报文 */
+    SEND,
+    /** 验签及解密 */
+    VERIFY,
+    /** 结果验证,转换及赋值 */
+    BUILD_RESULT
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+/**
+ * 处理阶段耗时监听器,每次处理完成后回调一次.
+ * 回调在处理线程中执行,实现应尽量轻量且不抛出异常.
+ * 
+ */
+public interface StageListener {
+
+    /**
+     * 处理完成
+     * 
+     * @param timings 本次处理的各阶段耗时,回调返回后不应再持有
+     */
+    public void onCompleted(StageTimings timings);
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import java.util.Arrays;
+
+import org.bankinterface.enums.ServiceType;
+
+/**
+ * 一次处理的各阶段耗时(纳秒)
+ * 
+ */
+public final class StageTimings {
+    private static final Stage[] STAGES = Stage.values();
+    /** 未安装监听器时使用,不计时 */
+    static final StageTimings    NONE   = new StageTimings(null, null, false);
+
+    private final String         bankName;
+    private final ServiceType    serviceType;
+    private final boolean        enabled;
+    private final long           startTime;
+    private final long[]         elapsed;
+    private long                 totalTime;
+    private String               status;
+
+    StageTimings(String bankName, ServiceType serviceType, boolean enabled) {
+        this.bankName = bankName;
+        this.serviceType = serviceType;
+        this.enabled = enabled;
+        this.startTime = enabled ? System.nanoTime() : 0L;
+        this.elapsed = enabled ? new long[STAGES.length] : null;
+        if (enabled) {
+            Arrays.fill(elapsed, -1L);
+        }
+    }
+
+    /**
+     * 阶段开始
+     * 
+     * @return 开始时间
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * 阶段结束,同一阶段多次执行时累计
+     * 
+     * @param stage
+     * @param start 阶段开始时间
+     * @return 结束时间,可作为下一阶段的开始时间
+     */
+    long lap(Stage stage, long start) {
+        if (!enabled) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        int i = stage.ordinal();
+        elapsed[i] = (elapsed[i] < 0 ? 0 : elapsed[i]) + now - start;
+        return now;
+    }
+
+    /**
+     * 处理结束
+     * 
+     * @param status 结果状态
+     */
+    void complete(String status) {
+        this.totalTime = System.nanoTime() - startTime;
+        this.status = status;
+    }
+
+    /**
+     * 支付机构类名
+     * 
+     * @return
+     */
+    public String getBankName() {
+        return bankName;
+    }
+
+    /**
+     * 服务类型
+     * 
+     * @return
+     */
+    public ServiceType getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * 结果状态
+     * 
+     * @return
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * 指定阶段耗时
+     * 
+     * @param stage
+     * @return 未执行到的阶段返回-1
+     */
+    public long getElapsed(Stage stage) {
+        return elapsed[stage.ordinal()];
+    }
+
+    /**
+     * 总耗时
+     * 
+     * @return
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(bankName).append(' ').append(serviceType).append(' ').append(status);
+        for (int i = 0; i < STAGES.length; i++) {
+            if (elapsed[i] >= 0) {
+                sb.append(' ').append(STAGES[i]).append('=').append(elapsed[i]);
+            }
+        }
+        return sb.append(" total=").append(totalTime).toString();
+    }
+}
@@ -17,6 +17,9 @@ package org.bankinterface.bank;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.bankinterface.adaptor.BankAdaptor;
 import org.bankinterface.adaptor.DefaultBankAdaptorHandler;
@@ -30,11 +33,17 @@ import org.bankinterface.converter.FenToAmountConverter;
 import org.bankinterface.converter.ReplaceConverter;
 import org.bankinterface.converter.StringToDateConverter;
 import org.bankinterface.converter.YuanToAmountConverter;
+import org.bankinterface.enums.ServiceType;
 import org.bankinterface.exception.ConfigException;
 import org.bankinterface.exception.ConversionException;
 import org.bankinterface.exception.SignVerifyException;
 import org.bankinterface.exception.ValidationException;
+import org.bankinterface.plan.ExecutionPlan;
+import org.bankinterface.resilience.Bulkhead;
+import org.bankinterface.resilience.RetryBudget;
+import org.bankinterface.resilience.RetryPolicy;
 import org.bankinterface.signer.Signer;
+import org.bankinterface.util.HttpConnectionManager;
 import org.bankinterface.validator.EqualsValidator;
 import org.bankinterface.validator.NotNullValidator;
 import org.bankinterface.validator.Validator;
@@ -57,6 +66,11 @@ public abstract class BaseBank extends BankAdaptor {
     private final Map<String, Signer> signerMap = new HashMap<String, Signer>();
     // 验签服务
     private final Map<String, Verifier> verifierMap = new HashMap<String, Verifier>();
+    // 执行计划缓存,按版本号分组,组内按服务类型和方向索引
+    private final ConcurrentMap<String, AtomicReferenceArray<ExecutionPlan>> planMap =
+            new ConcurrentHashMap<String, AtomicReferenceArray<ExecutionPlan>>();
+    // 隔离舱
+    private volatile Bulkhead bulkhead;
 
     /**
      * 初始化
@@ -65,10 +79,21 @@ public abstract class BaseBank extends BankAdaptor {
      * @throws ConfigException
      */
     public void init() throws ConfigException {
-        getBankConfig(configName, false);
+        BankConfig config = getBankConfig(configName, false);
         if (getHandler() == null) {
             setHandler(new DefaultBankAdaptorHandler(this));
         }
+        if (bulkhead == null && config.getBulkheadThreads() > 0) {
+            setBulkhead(new Bulkhead("bankinterface-" + configName, config.getBulkheadThreads(),
+                    config.getBulkheadQueueSize()));
+        }
+        if (getHandler() instanceof DefaultBankAdaptorHandler) {
+            DefaultBankAdaptorHandler handler = (DefaultBankAdaptorHandler) getHandler();
+            configureRetry(handler, config);
+            if (handler.getConnectionManager() == null && config.isConnectionPoolEnabled()) {
+                configureConnectionPool(handler, config);
+            }
+        }
         // register default converters
         registerValidator(new NotNullValidator());
         registerValidator(new EqualsValidator());
@@ -82,6 +107,29 @@ public abstract class BaseBank extends BankAdaptor {
         registerConverter(new StringToDateConverter());
     }
 
+    // 配置了连接池时该支付机构独享一个连接池
+    private void configureConnectionPool(DefaultBankAdaptorHandler handler, BankConfig config) {
+        HttpConnectionManager manager = new HttpConnectionManager(config.getConnectionPoolMaxPerRoute(),
+                config.getConnectionPoolIdleTimeout());
+        manager.setLeaseTimeout(config.getConnectionPoolLeaseTimeout());
+        handler.setConnectionManager(manager);
+    }
+
+    // 按支付机构配置设置各服务类型的重试策略,配置了重试时按配置的比例建立重试预算
+    private void configureRetry(DefaultBankAdaptorHandler handler, BankConfig config) {
+        boolean retry = false;
+        for (ServiceType serviceType : ServiceType.values()) {
+            RetryPolicy policy = config.getRetryPolicy(serviceType);
+            if (policy != null) {
+                handler.setRetryPolicy(serviceType, policy);
+                retry = true;
+            }
+        }
+        if (retry) {
+            handler.setRetryBudget(new RetryBudget(config.getRetryBudgetRatio()));
+        }
+    }
+
     /**
      * 获得支付机构指定版本配置
      * 
@@ -118,27 +166,85 @@ public abstract class BaseBank extends BankAdaptor {
         return config;
     }
 
+    /**
+     * 获得指定版本,服务类型的执行计划,首次使用时编译并缓存
+     * 
+     * @param version
+     * @param serviceType
+     * @param isIn true获得结果执行计划,false获得请求执行计划
+     * @return
+     * @throws ConfigException
+     */
+    public ExecutionPlan getExecutionPlan(String version, ServiceType serviceType, boolean isIn)
+            throws ConfigException {
+        String cacheKey = version == null ? "" : version;
+        AtomicReferenceArray<ExecutionPlan> plans = planMap.get(cacheKey);
+        if (plans == null) {
+            plans = new AtomicReferenceArray<ExecutionPlan>(ServiceType.values().length * 2);
+            AtomicReferenceArray<ExecutionPlan> existing = planMap.putIfAbsent(cacheKey, plans);
+            if (existing != null) {
+                plans = existing;
+            }
+        }
+        int index = serviceType.ordinal() * 2 + (isIn ? 1 : 0);
+        ExecutionPlan plan = plans.get(index);
+        if (plan == null) {
+            // 并发编译结果相同,后写入者覆盖即可
+            BankConfig config = getBankConfig(version);
+            plan = ExecutionPlan.compile(this, config, config.getConfigType(serviceType, isIn), isIn);
+            plans.set(index, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 设置隔离舱,默认处理器的异步处理及批量明细改在隔离舱中执行,批量并发数为隔离舱线程数
+     * 
+     * @param bulkhead
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+        if (bulkhead != null && getHandler() instanceof DefaultBankAdaptorHandler) {
+            DefaultBankAdaptorHandler handler = (DefaultBankAdaptorHandler) getHandler();
+            handler.setExecutor(bulkhead);
+            handler.setBatchConcurrency(bulkhead.getThreads());
+        }
+    }
+
+    /**
+     * 隔离舱,未配置时为null
+     * 
+     * @return
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
     public void registerConverter(Converter convert) {
         if (convert != null) {
             converterMap.put(convert.getName(), convert);
+            planMap.clear();
         }
     }
 
     public void registerValidator(Validator validate) {
         if (validate != null) {
             validatorMap.put(validate.getName(), validate);
+            planMap.clear();
         }
     }
 
     public void registerSigner(Signer signer) {
         if (signer != null) {
             signerMap.put(signer.getName(), signer);
+            planMap.clear();
         }
     }
 
     public void registerVerifier(Verifier verifier) {
         if (verifier != null) {
             verifierMap.put(verifier.getName(), verifier);
+            planMap.clear();
         }
     }
 
@@ -17,29 +17,28 @@ package org.bankinterface.builder;
 
 import java.util.Map;
 
-import org.apache.commons.beanutils.BeanUtils;
 import org.bankinterface.json.JsonHelper;
 import org.bankinterface.result.Result;
 
 @SuppressWarnings("unchecked")
 public class ResultBuilder {
-    private Result result;
+    private final Class<? extends Result> resultClass;
+    private final ResultPlan              plan;
+    private Result                        result;
 
     public ResultBuilder(Class<? extends Result> clazz) {
-        try {
-            result = clazz.newInstance();
-            result.setStatus(Result.SUCCESS);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        resultClass = clazz;
+        plan = ResultPlan.get(clazz);
+        result = plan.newInstance();
+        result.setStatus(Result.SUCCESS);
+    }
+
+    public Class<? extends Result> getResultClass() {
+        return resultClass;
     }
 
     public ResultBuilder populate(Map<String, Object> properties) {
-        try {
-            BeanUtils.populate(result, properties);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        plan.populate(result, properties);
         return this;
     }
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.builder;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.bankinterface.result.Result;
+
+/**
+ * 结果赋值计划,每个结果类型构建一次,只对结果类型中存在的可写属性赋值
+ *
+ */
+final class ResultPlan {
+    private static final MethodType SETTER_TYPE      = MethodType.methodType(void.class, Object.class,
+                                                             Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    // 赋值计划缓存
+    private static final ConcurrentMap<Class<?>, ResultPlan> plans = new ConcurrentHashMap<Class<?>, ResultPlan>();
+
+    private final MethodHandle constructor;
+    private final Setter[]     setters;
+
+    private ResultPlan(Class<? extends Result> resultClass) throws Exception {
+        this.constructor = MethodHandles.publicLookup()
+                .findConstructor(resultClass, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        List<Setter> list = new ArrayList<Setter>();
+        for (PropertyDescriptor descriptor : Introspector.getBeanInfo(resultClass).getPropertyDescriptors()) {
+            Method writeMethod = descriptor.getWriteMethod();
+            if (writeMethod != null) {
+                list.add(new Setter(descriptor.getName(), writeMethod.getParameterTypes()[0], MethodHandles
+                        .publicLookup().unreflect(writeMethod).asType(SETTER_TYPE)));
+            }
+        }
+        this.setters = list.toArray(new Setter[list.size()]);
+    }
+
+    /**
+     * 获得指定结果类型的赋值计划
+     *
+     * @param resultClass
+     * @return
+     */
+    static ResultPlan get(Class<? extends Result> resultClass) {
+        ResultPlan plan = plans.get(resultClass);
+        if (plan == null) {
+            try {
+                plan = new ResultPlan(resultClass);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            plans.put(resultClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 创建结果对象
+     *
+     * @return
+     */
+    Result newInstance() {
+        try {
+            return (Result) (Object) constructor.invokeExact();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * 用属性集合中与结果类型同名的属性赋值,其他属性忽略
+     *
+     * @param result
+     * @param properties
+     */
+    void populate(Result result, Map<String, ?> properties) {
+        Setter setter;
+        Object value;
+        for (int i = 0; i < setters.length; i++) {
+            setter = setters[i];
+            value = properties.get(setter.name);
+            if (value == null && !properties.containsKey(setter.name)) {
+                continue;
+            }
+            setter.set(result, value);
+        }
+    }
+
+    static final class Setter {
+        final String       name;
+        final Class<?>     type;
+        final MethodHandle handle;
+
+        Setter(String name, Class<?> type, MethodHandle handle) {
+            this.name = name;
+            this.type = type;
+            this.handle = handle;
+        }
+
+        void set(Object bean, Object value) {
+            Object converted = convert(value);
+            if (converted == null && type.isPrimitive()) {
+                return;
+            }
+            try {
+                handle.invokeExact(bean, converted);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Set property " + name + " Error!", t);
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Object convert(Object value) {
+            if (value == null || type.isInstance(value)) {
+                return value;
+            }
+            if (type == String.class) {
+                return value.toString();
+            }
+            String text = value.toString().trim();
+            if (type.isEnum()) {
+                return text.length() == 0 ? null : Enum.valueOf((Class<? extends Enum>) type, text);
+            }
+            // 枚举以外的类型交由commons-beanutils转换,与逐个属性反射赋值时一致,包括调用方注册的转换器,
+            // 格式错误的整数取默认值0,布尔值接受Y,1,on等
+            Object converted = ConvertUtils.convert(value, type);
+            if (converted != null && !MethodType.methodType(type).wrap().returnType().isInstance(converted)) {
+                throw new IllegalArgumentException("Cannot convert " + value.getClass().getName() + " to "
+                        + type.getName() + " for property " + name);
+            }
+            return converted;
+        }
+    }
+}
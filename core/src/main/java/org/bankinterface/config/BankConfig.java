@@ -18,6 +18,7 @@ package org.bankinterface.config;
 import java.util.Map;
 
 import org.bankinterface.enums.ServiceType;
+import org.bankinterface.resilience.RetryPolicy;
 
 /**
  * 支付机构配置接口 根据请求类型,获取相应支付机构配置信息.
@@ -213,4 +214,61 @@ public interface BankConfig {
      */
     public String getConfigType(ServiceType serviceType, boolean isIn);
 
+    /**
+     * 获得隔离舱线程数
+     * 
+     * @return 0表示不隔离,使用共享执行器
+     */
+    public int getBulkheadThreads();
+
+    /**
+     * 获得隔离舱等待队列长度
+     * 
+     * @return
+     */
+    public int getBulkheadQueueSize();
+
+    /**
+     * 是否配置了HTTP连接池
+     * 
+     * @return false表示每次请求使用HttpURLConnection
+     */
+    public boolean isConnectionPoolEnabled();
+
+    /**
+     * 获得连接池每个路由的最大连接数
+     * 
+     * @return 0表示不限制
+     */
+    public int getConnectionPoolMaxPerRoute();
+
+    /**
+     * 获得连接池空闲连接关闭时间(毫秒)
+     * 
+     * @return
+     */
+    public long getConnectionPoolIdleTimeout();
+
+    /**
+     * 获得路由连接数已满时等待空闲连接的时间(毫秒)
+     * 
+     * @return
+     */
+    public long getConnectionPoolLeaseTimeout();
+
+    /**
+     * 获得指定服务类型的重试策略,未单独配置时只有幂等的QUERY及BATCH_QUERY使用默认策略重试
+     * 
+     * @param serviceType
+     * @return 未配置重试或该服务类型不重试时返回null
+     */
+    public RetryPolicy getRetryPolicy(ServiceType serviceType);
+
+    /**
+     * 获得重试数占请求数的上限
+     * 
+     * @return
+     */
+    public double getRetryBudgetRatio();
+
 }
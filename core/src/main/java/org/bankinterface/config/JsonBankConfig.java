@@ -18,13 +18,18 @@ package org.bankinterface.config;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.bankinterface.enums.ServiceType;
 import org.bankinterface.exception.ConfigException;
+import org.bankinterface.resilience.RetryBudget;
+import org.bankinterface.resilience.RetryPolicy;
+import org.bankinterface.util.HttpConnectionManager;
 import org.bankinterface.util.KeyStoreUtil;
+import org.bankinterface.util.SSLSessionCache;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -71,6 +76,86 @@ public class JsonBankConfig implements BankConfig {
      */
     public static final String CONFIG_KEY_STORE_SIGN_VERIFY = "isSignVerifyStore";
 
+    /**
+     * TLS会话缓存配置区域
+     */
+    public static final String CONFIG_TLS_SESSION_CACHE     = "TlsSessionCache";
+
+    /**
+     * 支付机构主机名
+     */
+    public static final String CONFIG_SESSION_HOST          = "host";
+
+    /**
+     * 缓存会话数,0不限制
+     */
+    public static final String CONFIG_SESSION_SIZE          = "size";
+
+    /**
+     * 会话有效期(秒),0不限制
+     */
+    public static final String CONFIG_SESSION_TIMEOUT       = "timeout";
+
+    /**
+     * 隔离舱配置区域
+     */
+    public static final String CONFIG_BULKHEAD              = "Bulkhead";
+
+    /**
+     * 隔离舱线程数,0不隔离
+     */
+    public static final String CONFIG_BULKHEAD_THREADS      = "threads";
+
+    /**
+     * 隔离舱等待队列长度
+     */
+    public static final String CONFIG_BULKHEAD_QUEUE_SIZE   = "queueSize";
+
+    /**
+     * 重试配置区域,其中以服务类型为键配置该服务类型的重试策略
+     */
+    public static final String CONFIG_RETRY                 = "Retry";
+
+    /**
+     * 重试数占请求数的上限
+     */
+    public static final String CONFIG_RETRY_BUDGET_RATIO    = "budgetRatio";
+
+    /**
+     * 包括首次在内的最多发送次数,1不重试
+     */
+    public static final String CONFIG_RETRY_MAX_ATTEMPTS    = "maxAttempts";
+
+    /**
+     * 退避基数(毫秒)
+     */
+    public static final String CONFIG_RETRY_BASE_DELAY      = "baseDelayMillis";
+
+    /**
+     * 单次退避上限(毫秒)
+     */
+    public static final String CONFIG_RETRY_MAX_DELAY       = "maxDelayMillis";
+
+    /**
+     * HTTP连接池配置区域,配置后该支付机构的请求使用长连接,未配置时使用HttpURLConnection
+     */
+    public static final String CONFIG_CONNECTION_POOL       = "ConnectionPool";
+
+    /**
+     * 每个路由的最大连接数,0不限制
+     */
+    public static final String CONFIG_POOL_MAX_PER_ROUTE    = "maxPerRoute";
+
+    /**
+     * 空闲连接关闭时间(毫秒)
+     */
+    public static final String CONFIG_POOL_IDLE_TIMEOUT     = "idleTimeout";
+
+    /**
+     * 路由连接数已满时等待空闲连接的时间(毫秒)
+     */
+    public static final String CONFIG_POOL_LEASE_TIMEOUT    = "leaseTimeout";
+
     /**
      * 入参默认值区域
      */
@@ -174,6 +259,15 @@ public class JsonBankConfig implements BankConfig {
     private final Map<String, String[]> configValueArray = new HashMap<String, String[]>();
     private final Map<String, String> configValueString = new HashMap<String, String>();
     private final String configName;
+    private int bulkheadThreads;
+    private int bulkheadQueueSize;
+    private boolean connectionPoolEnabled;
+    private int connectionPoolMaxPerRoute = HttpConnectionManager.DEFAULT_MAX_PER_ROUTE;
+    private long connectionPoolIdleTimeout = HttpConnectionManager.DEFAULT_IDLE_TIMEOUT;
+    private long connectionPoolLeaseTimeout = HttpConnectionManager.DEFAULT_LEASE_TIMEOUT;
+    // 按服务类型的重试策略,null表示未配置重试
+    private Map<ServiceType, RetryPolicy> retryPolicies;
+    private double retryBudgetRatio = RetryBudget.DEFAULT_RATIO;
     private JSONObject config;
 
     public JsonBankConfig(String configName) throws ConfigException {
@@ -221,6 +315,46 @@ public class JsonBankConfig implements BankConfig {
         return configValueToString(type, CONFIG_SIGNATURE_KEY, true);
     }
 
+    public int getBulkheadThreads() {
+        return bulkheadThreads;
+    }
+
+    public int getBulkheadQueueSize() {
+        return bulkheadQueueSize;
+    }
+
+    public boolean isConnectionPoolEnabled() {
+        return connectionPoolEnabled;
+    }
+
+    public int getConnectionPoolMaxPerRoute() {
+        return connectionPoolMaxPerRoute;
+    }
+
+    public long getConnectionPoolIdleTimeout() {
+        return connectionPoolIdleTimeout;
+    }
+
+    public long getConnectionPoolLeaseTimeout() {
+        return connectionPoolLeaseTimeout;
+    }
+
+    public RetryPolicy getRetryPolicy(ServiceType serviceType) {
+        if (retryPolicies == null) {
+            return null;
+        }
+        RetryPolicy policy = retryPolicies.get(serviceType);
+        if (policy == null && !retryPolicies.containsKey(serviceType)
+                && (serviceType == ServiceType.QUERY || serviceType == ServiceType.BATCH_QUERY)) {
+            policy = new RetryPolicy();
+        }
+        return policy;
+    }
+
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
     public String getConfigType(ServiceType serviceType, boolean isIn) {
         if (isIn) {
             return IN_TYPE.get(serviceType);
@@ -247,6 +381,31 @@ public class JsonBankConfig implements BankConfig {
                     if (CONFIG_KEY_STORE_INFO.equals(type)) {
                         JSONArray keyStoreInfos = config.optJSONArray(type);
                         registerKeyStoreInfo(keyStoreInfos);
+                    } else if (CONFIG_TLS_SESSION_CACHE.equals(type)) {
+                        JSONArray sessionCaches = config.optJSONArray(type);
+                        configureSessionCache(sessionCaches);
+                    } else if (CONFIG_BULKHEAD.equals(type)) {
+                        JSONObject bulkhead = config.optJSONObject(type);
+                        if (bulkhead != null) {
+                            bulkheadThreads = bulkhead.optInt(CONFIG_BULKHEAD_THREADS, 0);
+                            bulkheadQueueSize = bulkhead.optInt(CONFIG_BULKHEAD_QUEUE_SIZE, 0);
+                        }
+                    } else if (CONFIG_CONNECTION_POOL.equals(type)) {
+                        JSONObject pool = config.optJSONObject(type);
+                        if (pool != null) {
+                            connectionPoolEnabled = true;
+                            connectionPoolMaxPerRoute = pool.optInt(CONFIG_POOL_MAX_PER_ROUTE,
+                                    HttpConnectionManager.DEFAULT_MAX_PER_ROUTE);
+                            connectionPoolIdleTimeout = pool.optLong(CONFIG_POOL_IDLE_TIMEOUT,
+                                    HttpConnectionManager.DEFAULT_IDLE_TIMEOUT);
+                            connectionPoolLeaseTimeout = pool.optLong(CONFIG_POOL_LEASE_TIMEOUT,
+                                    HttpConnectionManager.DEFAULT_LEASE_TIMEOUT);
+                        }
+                    } else if (CONFIG_RETRY.equals(type)) {
+                        JSONObject retry = config.optJSONObject(type);
+                        if (retry != null) {
+                            configureRetry(retry);
+                        }
                     } else {
                         configValueToMap(type, CONFIG_PARAMETER, false);
                         configValueToMap(type, CONFIG_DEFAULT, false);
@@ -269,6 +428,27 @@ public class JsonBankConfig implements BankConfig {
         log.info("End Init BankConfig:" + configName);
     }
 
+    /**
+     * 读取重试配置,maxAttempts为1的服务类型不重试
+     * 
+     * @param retry
+     */
+    private void configureRetry(JSONObject retry) {
+        retryPolicies = new EnumMap<ServiceType, RetryPolicy>(ServiceType.class);
+        retryBudgetRatio = retry.optDouble(CONFIG_RETRY_BUDGET_RATIO, RetryBudget.DEFAULT_RATIO);
+        for (ServiceType serviceType : ServiceType.values()) {
+            JSONObject item = retry.optJSONObject(serviceType.name());
+            if (item == null) {
+                continue;
+            }
+            RetryPolicy policy = new RetryPolicy();
+            policy.setMaxAttempts(item.optInt(CONFIG_RETRY_MAX_ATTEMPTS, policy.getMaxAttempts()));
+            policy.setBaseDelayMillis(item.optLong(CONFIG_RETRY_BASE_DELAY, policy.getBaseDelayMillis()));
+            policy.setMaxDelayMillis(item.optLong(CONFIG_RETRY_MAX_DELAY, policy.getMaxDelayMillis()));
+            retryPolicies.put(serviceType, policy.getMaxAttempts() > 1 ? policy : null);
+        }
+    }
+
     /**
      * 读取证书配置信息,注册证书
      * 
@@ -300,6 +480,33 @@ public class JsonBankConfig implements BankConfig {
         }
     }
 
+    /**
+     * 读取TLS会话缓存配置,按主机设置会话缓存
+     * 
+     * @param sessionCaches
+     */
+    private void configureSessionCache(JSONArray sessionCaches) {
+        if (sessionCaches == null) {
+            return;
+        }
+
+        JSONObject sessionCache;
+        String host;
+        for (int i = 0, l = sessionCaches.length(); i < l; i++) {
+            sessionCache = sessionCaches.optJSONObject(i);
+            if (sessionCache != null) {
+                host = sessionCache.optString(CONFIG_SESSION_HOST);
+                if (host.length() == 0) {
+                    log.warn("TlsSessionCache without host ignored: " + sessionCache);
+                    continue;
+                }
+                // 未配置的项保留JSSE默认值
+                SSLSessionCache.configure(host, sessionCache.optInt(CONFIG_SESSION_SIZE, -1),
+                        sessionCache.optInt(CONFIG_SESSION_TIMEOUT, -1));
+            }
+        }
+    }
+
     /**
      * 获取配置内容
      * 
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.exception;
+
+/**
+ * 熔断中,请求未发送.作为通信异常处理
+ * 
+ */
+public class CircuitOpenException extends HttpClientException {
+    private static final long serialVersionUID = -3315587013410213752L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+    // 快速失败,不需要堆栈
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -15,7 +15,13 @@
  */
 package org.bankinterface.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.alibaba.fastjson.serializer.SerializerFeature;
 
 public class FastJson implements JsonHandler {
 
@@ -24,9 +30,44 @@ public class FastJson implements JsonHandler {
         return JSON.toJSONStringWithDateFormat(src, DEFAULT_DATE_FORMAT);
     }
 
+    @Override
+    public byte[] toJsonBytes(Object src) {
+        SerializeWriter writer = write(src);
+        try {
+            return writer.toBytes(UTF_8.name());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public void toJson(Object src, OutputStream out) throws IOException {
+        SerializeWriter writer = write(src);
+        try {
+            writer.writeTo(out, UTF_8);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public <T> T fromJson(byte[] json, Class<T> classOfT) {
+        return JSON.parseObject(json, classOfT);
+    }
+
     @Override
     public <T> T fromJson(String json, Class<T> classOfT) {
         return JSON.parseObject(json, classOfT);
     }
 
+    // 与toJSONStringWithDateFormat相同的序列化方式,结果保留在SerializeWriter的缓冲区中
+    private static SerializeWriter write(Object src) {
+        SerializeWriter writer = new SerializeWriter();
+        JSONSerializer serializer = new JSONSerializer(writer);
+        serializer.config(SerializerFeature.WriteDateUseDateFormat, true);
+        serializer.setDateFormat(DEFAULT_DATE_FORMAT);
+        serializer.write(src);
+        return writer;
+    }
+
 }
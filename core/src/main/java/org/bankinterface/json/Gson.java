@@ -15,6 +15,13 @@
  */
 package org.bankinterface.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 import com.google.gson.GsonBuilder;
 
 public class Gson implements JsonHandler {
@@ -33,4 +40,16 @@ public class Gson implements JsonHandler {
         return gson.fromJson(json, classOfT);
     }
 
+    @Override
+    public void toJson(Object src, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        gson.toJson(src, writer);
+        writer.flush();
+    }
+
+    @Override
+    public <T> T fromJson(InputStream in, Class<T> classOfT) throws IOException {
+        return gson.fromJson(new InputStreamReader(in, UTF_8), classOfT);
+    }
+
 }
@@ -15,8 +15,19 @@
  */
 package org.bankinterface.json;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * JSON处理器,字节形式的JSON均为UTF-8编码
+ * 
+ */
 public interface JsonHandler {
-    public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    public static final String  DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    public static final Charset UTF_8               = Charset.forName("UTF-8");
 
     /**
      * 指定的对象转换为JSON字符串
@@ -35,4 +46,54 @@ public interface JsonHandler {
      */
     public <T> T fromJson(String json, Class<T> classOfT);
 
-}
\ No newline at end of file
+    /**
+     * 指定的对象转换为JSON字节数组
+     * 
+     * @param src 指定的对象
+     * @return UTF-8编码的JSON
+     */
+    public default byte[] toJsonBytes(Object src) {
+        return toJson(src).getBytes(UTF_8);
+    }
+
+    /**
+     * 指定的对象转换为JSON并写入输出流,输出流不会被关闭
+     * 
+     * @param src 指定的对象
+     * @param out 输出流
+     * @throws IOException
+     */
+    public default void toJson(Object src, OutputStream out) throws IOException {
+        out.write(toJsonBytes(src));
+    }
+
+    /**
+     * JSON字节数组转换为指定的类型对象
+     * 
+     * @param json UTF-8编码的JSON
+     * @param classOfT 指定的类型
+     * @return
+     */
+    public default <T> T fromJson(byte[] json, Class<T> classOfT) {
+        return fromJson(new String(json, UTF_8), classOfT);
+    }
+
+    /**
+     * 从输入流读取JSON并转换为指定的类型对象,输入流不会被关闭
+     * 
+     * @param in UTF-8编码的JSON输入流
+     * @param classOfT 指定的类型
+     * @return
+     * @throws IOException
+     */
+    public default <T> T fromJson(InputStream in, Class<T> classOfT) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[4096];
+        int n;
+        while ((n = in.read(bytes)) != -1) {
+            buffer.write(bytes, 0, n);
+        }
+        return fromJson(buffer.toByteArray(), classOfT);
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package org.bankinterface.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ServiceLoader;
 
 public class JsonHelper {
@@ -57,4 +60,48 @@ public class JsonHelper {
         return getJsonHandler().fromJson(json, classOfT);
     }
 
+    /**
+     * 指定的对象转换为UTF-8编码的JSON字节数组
+     * 
+     * @param src
+     * @return
+     */
+    public static byte[] toJsonBytes(Object src) {
+        return getJsonHandler().toJsonBytes(src);
+    }
+
+    /**
+     * 指定的对象转换为JSON并写入输出流
+     * 
+     * @param src
+     * @param out
+     * @throws IOException
+     */
+    public static void toJson(Object src, OutputStream out) throws IOException {
+        getJsonHandler().toJson(src, out);
+    }
+
+    /**
+     * UTF-8编码的JSON字节数组转换为指定的类型对象
+     * 
+     * @param json
+     * @param classOfT
+     * @return
+     */
+    public static <T> T fromJson(byte[] json, Class<T> classOfT) {
+        return getJsonHandler().fromJson(json, classOfT);
+    }
+
+    /**
+     * 从UTF-8编码的JSON输入流读取指定的类型对象
+     * 
+     * @param in
+     * @param classOfT
+     * @return
+     * @throws IOException
+     */
+    public static <T> T fromJson(InputStream in, Class<T> classOfT) throws IOException {
+        return getJsonHandler().fromJson(in, classOfT);
+    }
+
 }
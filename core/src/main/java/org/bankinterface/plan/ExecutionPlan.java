@@ -0,0 +1,239 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.plan;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bankinterface.bank.BaseBank;
+import org.bankinterface.config.BankConfig;
+import org.bankinterface.converter.Converter;
+import org.bankinterface.exception.ConversionException;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.exception.ValidationException;
+import org.bankinterface.signer.Signer;
+import org.bankinterface.util.Utils;
+import org.bankinterface.validator.Validator;
+import org.bankinterface.verifier.Verifier;
+
+/**
+ * 执行计划,由支付机构配置中的某个配置项编译而成,不可变.
+ * 验证/转换规则,签名/验签服务在编译时解析,处理请求时只需遍历槽位数组.
+ *
+ */
+public final class ExecutionPlan {
+    private static final FieldSlot[] EMPTY_SLOTS = new FieldSlot[0];
+
+    private final String              type;
+    private final Map<String, String> defaultValue;
+    private final FieldSlot[]         validatorSlots;
+    private final FieldSlot[]         converterSlots;
+    private final String[]            signedField;
+    private final String              joinStyle;
+    private final String              signatureKey;
+    private final Signer              signer;
+    private final Verifier            verifier;
+
+    private ExecutionPlan(String type, Map<String, String> defaultValue, FieldSlot[] validatorSlots,
+            FieldSlot[] converterSlots, String[] signedField, String joinStyle, String signatureKey, Signer signer,
+            Verifier verifier) {
+        this.type = type;
+        this.defaultValue = defaultValue;
+        this.validatorSlots = validatorSlots;
+        this.converterSlots = converterSlots;
+        this.signedField = signedField;
+        this.joinStyle = joinStyle;
+        this.signatureKey = signatureKey;
+        this.signer = signer;
+        this.verifier = verifier;
+    }
+
+    /**
+     * 编译指定配置项
+     *
+     * @param bank 支付机构,用于解析验证/转换规则,签名/验签服务
+     * @param config 支付机构配置
+     * @param type 配置项标识
+     * @param isIn true编译结果配置项,false编译请求配置项
+     * @return
+     */
+    public static ExecutionPlan compile(BaseBank bank, BankConfig config, String type, boolean isIn) {
+        Map<String, String> defaultMap = config.getDefaultValue(type);
+        Map<String, String> mappingMap = config.getMapping(type);
+        Map<String, String> templateMap = config.getTemplate(type);
+        Map<String, String> validatorMap = config.getValidator(type);
+        Map<String, String> converterMap = config.getConverter(type);
+
+        FieldSlot[] validatorSlots = EMPTY_SLOTS;
+        if (validatorMap != null && !validatorMap.isEmpty()) {
+            validatorSlots = new FieldSlot[validatorMap.size()];
+            int i = 0;
+            for (Map.Entry<String, String> entry : validatorMap.entrySet()) {
+                String key = entry.getKey();
+                validatorSlots[i++] = new FieldSlot(key, mappingMap.get(key), defaultMap.get(key), null,
+                        resolveValidator(bank, entry.getValue()), null);
+            }
+        }
+
+        FieldSlot[] converterSlots = EMPTY_SLOTS;
+        if (converterMap != null && !converterMap.isEmpty()) {
+            converterSlots = new FieldSlot[converterMap.size()];
+            int i = 0;
+            for (Map.Entry<String, String> entry : converterMap.entrySet()) {
+                String key = entry.getKey();
+                converterSlots[i++] = new FieldSlot(key, mappingMap.get(key), defaultMap.get(key),
+                        templateMap.get(key), null, resolveConverter(bank, entry.getValue()));
+            }
+        }
+
+        String signatureKey = config.getSignatureKey(type);
+        String signerOrVerifier = config.getSignerOrVerifier(type);
+        Signer signer = null;
+        Verifier verifier = null;
+        if (isIn) {
+            verifier = resolveVerifier(bank, signerOrVerifier);
+        } else if (!Utils.isEmpty(signatureKey)) {
+            signer = resolveSigner(bank, signerOrVerifier);
+        }
+
+        return new ExecutionPlan(type, Collections.unmodifiableMap(new HashMap<String, String>(defaultMap)),
+                validatorSlots, converterSlots, config.getSignedField(type), config.getJoinStyle(type),
+                signatureKey, signer, verifier);
+    }
+
+    /**
+     * 配置项标识
+     *
+     * @return
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * 报文默认值(只读)
+     *
+     * @return
+     */
+    public Map<String, String> getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * 需要验证的槽位
+     *
+     * @return
+     */
+    public FieldSlot[] getValidatorSlots() {
+        return validatorSlots;
+    }
+
+    /**
+     * 需要转换的槽位
+     *
+     * @return
+     */
+    public FieldSlot[] getConverterSlots() {
+        return converterSlots;
+    }
+
+    /**
+     * 被签名的参数名称
+     *
+     * @return
+     */
+    public String[] getSignedField() {
+        return signedField;
+    }
+
+    /**
+     * 组装报文风格
+     *
+     * @return
+     */
+    public String getJoinStyle() {
+        return joinStyle;
+    }
+
+    /**
+     * 存放签名的参数名称
+     *
+     * @return
+     */
+    public String getSignatureKey() {
+        return signatureKey;
+    }
+
+    /**
+     * 签名服务
+     *
+     * @return
+     * @throws SignVerifyException 签名服务未注册
+     */
+    public Signer getSigner() throws SignVerifyException {
+        if (signer == null) {
+            throw SignVerifyException.UNSUPPORTED;
+        }
+        return signer;
+    }
+
+    /**
+     * 验签服务
+     *
+     * @return
+     * @throws SignVerifyException 验签服务未注册
+     */
+    public Verifier getVerifier() throws SignVerifyException {
+        if (verifier == null) {
+            throw SignVerifyException.UNSUPPORTED;
+        }
+        return verifier;
+    }
+
+    // 未注册的规则/服务在编译时记为null,执行到时再抛出,与逐次查找时的异常时机保持一致
+    private static Validator resolveValidator(BaseBank bank, String name) {
+        try {
+            return bank.getValidator(name);
+        } catch (ValidationException e) {
+            return null;
+        }
+    }
+
+    private static Converter resolveConverter(BaseBank bank, String name) {
+        try {
+            return bank.getConverter(name);
+        } catch (ConversionException e) {
+            return null;
+        }
+    }
+
+    private static Signer resolveSigner(BaseBank bank, String name) {
+        try {
+            return bank.getSigner(name);
+        } catch (SignVerifyException e) {
+            return null;
+        }
+    }
+
+    private static Verifier resolveVerifier(BaseBank bank, String name) {
+        try {
+            return bank.getVerifier(name);
+        } catch (SignVerifyException e) {
+            return null;
+        }
+    }
+}
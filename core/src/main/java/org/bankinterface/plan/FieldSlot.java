@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.plan;
+
+import org.bankinterface.converter.Converter;
+import org.bankinterface.exception.ConversionException;
+import org.bankinterface.exception.ValidationException;
+import org.bankinterface.util.PropertyAccessor;
+import org.bankinterface.util.PropertyAccessorFactory;
+import org.bankinterface.validator.Validator;
+
+/**
+ * 报文字段槽位,持有预先解析好的映射,默认值,模板及验证/转换规则
+ *
+ */
+public final class FieldSlot {
+    private final String    key;
+    private final String    mapping;
+    private final String    defaultValue;
+    private final String    template;
+    private final Validator validator;
+    private final Converter converter;
+    // 最近一次使用的入参类型及其属性读取器
+    private volatile BoundAccessor boundAccessor;
+
+    FieldSlot(String key, String mapping, String defaultValue, String template, Validator validator,
+            Converter converter) {
+        this.key = key;
+        this.mapping = mapping;
+        this.defaultValue = defaultValue;
+        this.template = template;
+        this.validator = validator;
+        this.converter = converter;
+    }
+
+    /**
+     * 报文参数名
+     *
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 报文对应入参/结果名称
+     *
+     * @return
+     */
+    public String getMapping() {
+        return mapping;
+    }
+
+    /**
+     * 报文默认值
+     *
+     * @return
+     */
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * 转换模板
+     *
+     * @return
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 读取入参中映射的属性值,属性读取器按入参类型解析一次后复用
+     *
+     * @param bean
+     * @return
+     * @throws Exception
+     */
+    public Object getValue(Object bean) throws Exception {
+        if (mapping == null || bean == null) {
+            return null;
+        }
+        Class<?> type = bean.getClass();
+        BoundAccessor bound = boundAccessor;
+        if (bound == null || bound.type != type) {
+            bound = new BoundAccessor(type, PropertyAccessorFactory.getAccessor(type, mapping));
+            boundAccessor = bound;
+        }
+        return bound.accessor.get(bean);
+    }
+
+    /**
+     * 用槽位的验证规则验证
+     *
+     * @param value
+     * @throws ValidationException 验证失败或验证规则未注册
+     */
+    public void validate(Object value) throws ValidationException {
+        if (validator == null) {
+            throw ValidationException.UNSUPPORTED;
+        }
+        validator.validate(mapping, value, defaultValue);
+    }
+
+    /**
+     * 用槽位的转换规则转换
+     *
+     * @param value
+     * @return
+     * @throws ConversionException 转换失败或转换规则未注册
+     */
+    public Object convert(Object value) throws ConversionException {
+        if (converter == null) {
+            throw ConversionException.UNSUPPORTED;
+        }
+        return converter.convert(mapping, value, template);
+    }
+
+    static final class BoundAccessor {
+        final Class<?>         type;
+        final PropertyAccessor accessor;
+
+        BoundAccessor(Class<?> type, PropertyAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 单个请求地址的自适应读超时,记录最近调用的耗时,按{@link AdaptiveTimeoutPolicy}计算读超时.
+ * 成功调用记录实际耗时,超时失败的调用按已用时间记录,使分位数在支付机构变慢时随之升高;
+ * 其他失败(如连接被拒绝)不记录.
+ * 
+ */
+public class AdaptiveTimeout {
+    private final double        percentile;
+    private final double        multiplier;
+    private final int           floorMillis;
+    private final int           ceilingMillis;
+    private final LatencyWindow window;
+
+    AdaptiveTimeout(AdaptiveTimeoutPolicy policy) {
+        this.percentile = policy.getPercentile();
+        this.multiplier = policy.getMultiplier();
+        this.floorMillis = policy.getFloorMillis();
+        this.ceilingMillis = Math.max(policy.getCeilingMillis(), floorMillis);
+        this.window = new LatencyWindow(policy.getWindowSize(), policy.getMinimumSamples());
+    }
+
+    /**
+     * 当前读超时(毫秒)
+     * 
+     * @return
+     */
+    public int getReadTimeout() {
+        long latency = window.getPercentile(percentile);
+        if (latency < 0) {
+            return ceilingMillis;
+        }
+        return (int) Math.max(floorMillis, Math.min(ceilingMillis, (long) (latency * multiplier)));
+    }
+
+    /**
+     * 记录一次调用
+     * 
+     * @param elapsedMillis 调用耗时
+     * @param failed 是否通信失败
+     * @param appliedTimeout 调用使用的读超时
+     */
+    public void record(long elapsedMillis, boolean failed, int appliedTimeout) {
+        if (failed && elapsedMillis < appliedTimeout) {
+            return;
+        }
+        window.record(elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveTimeout[" + getReadTimeout() + "ms]";
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 自适应超时策略,{@link AdaptiveTimeout}的参数配置.
+ * 
+ * <pre>
+ * 读超时 = 最近windowSize次调用耗时的percentile分位数 * multiplier,限制在[floorMillis, ceilingMillis]之间.
+ * 样本数不足minimumSamples时使用ceilingMillis.
+ * </pre>
+ */
+public class AdaptiveTimeoutPolicy {
+    private double percentile     = 0.99;
+    private double multiplier     = 1.5;
+    private int    floorMillis    = 500;
+    private int    ceilingMillis  = 3000;
+    private int    windowSize     = 200;
+    private int    minimumSamples = 20;
+
+    /**
+     * 创建按本策略计算超时的跟踪器
+     * 
+     * @return
+     */
+    public AdaptiveTimeout newAdaptiveTimeout() {
+        return new AdaptiveTimeout(this);
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * 耗时分位数,(0, 1],默认0.99
+     * 
+     * @param percentile
+     */
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+        this.percentile = percentile;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * 分位数倍数,默认1.5
+     * 
+     * @param multiplier
+     */
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public int getFloorMillis() {
+        return floorMillis;
+    }
+
+    /**
+     * 读超时下限(毫秒),默认500
+     * 
+     * @param floorMillis
+     */
+    public void setFloorMillis(int floorMillis) {
+        this.floorMillis = floorMillis;
+    }
+
+    public int getCeilingMillis() {
+        return ceilingMillis;
+    }
+
+    /**
+     * 读超时上限(毫秒),默认3000
+     * 
+     * @param ceilingMillis
+     */
+    public void setCeilingMillis(int ceilingMillis) {
+        this.ceilingMillis = ceilingMillis;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 统计的最近调用数,默认200
+     * 
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    /**
+     * 开始自适应的最少样本数,默认20
+     * 
+     * @param minimumSamples
+     */
+    public void setMinimumSamples(int minimumSamples) {
+        this.minimumSamples = minimumSamples;
+    }
+}
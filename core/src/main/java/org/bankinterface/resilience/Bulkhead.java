@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bankinterface.util.ThreadUtil;
+
+/**
+ * 隔离舱,支付机构独占的有界执行器.线程数及等待队列均有上限,队列满时拒绝任务并计数,
+ * 一个支付机构变慢只会耗尽自己的线程.
+ * 
+ */
+public class Bulkhead implements Executor {
+    // 当前线程所属的隔离舱
+    private static final ThreadLocal<Bulkhead> CURRENT  = new ThreadLocal<Bulkhead>();
+
+    private final String                       name;
+    private final int                          threads;
+    private final ThreadPoolExecutor           executor;
+    private final AtomicLong                   rejected = new AtomicLong();
+
+    /**
+     * @param name 线程名前缀
+     * @param threads 线程数
+     * @param queueSize 等待队列长度,0不排队
+     */
+    public Bulkhead(final String name, int threads, int queueSize) {
+        if (threads <= 0 || queueSize < 0) {
+            throw new IllegalArgumentException("threads must be positive and queueSize not negative");
+        }
+        this.name = name;
+        this.threads = threads;
+        BlockingQueue<Runnable> queue = queueSize == 0 ? new SynchronousQueue<Runnable>()
+                : new ArrayBlockingQueue<Runnable>(queueSize);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(final Runnable r) {
+                return ThreadUtil.newThread(new Runnable() {
+                    public void run() {
+                        CURRENT.set(Bulkhead.this);
+                        r.run();
+                    }
+                }, name + "-" + counter.incrementAndGet());
+            }
+        }, new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException(Bulkhead.this.name + " bulkhead is full");
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @throws RejectedExecutionException 线程及等待队列已满
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 当前线程是否为本隔离舱的线程
+     * 
+     * @return
+     */
+    public boolean isCurrentThread() {
+        return CURRENT.get() == this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 线程数
+     * 
+     * @return
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 正在执行的任务数
+     * 
+     * @return
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 等待执行的任务数
+     * 
+     * @return
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 被拒绝的任务数
+     * 
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * 不再接受新任务,已提交的任务继续执行
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[active=" + getActiveCount() + ", queued=" + getQueueDepth() + ", rejected="
+                + getRejectedCount() + "]";
+    }
+}
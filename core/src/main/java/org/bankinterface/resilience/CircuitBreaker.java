@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 熔断器,按{@link CircuitBreakerPolicy}统计最近调用的通信失败及慢调用比例.
+ * 每次{@link #tryAcquire()}成功后必须以{@link #onResult(boolean, long)}报告结果.
+ * 
+ */
+public class CircuitBreaker {
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /** 关闭,正常放行 */
+        CLOSED,
+        /** 熔断,拒绝调用 */
+        OPEN,
+        /** 半开,放行有限的探测调用 */
+        HALF_OPEN
+    }
+
+    private static final byte FAILURE = 1;
+    private static final byte SLOW    = 2;
+    private final String      name;
+    private final int         windowSize;
+    private final int         minimumCalls;
+    private final double      failureRateThreshold;
+    private final long        slowCallMillis;
+    private final double      slowCallRateThreshold;
+    private final long        openMillis;
+    private final int         halfOpenCalls;
+    // 关闭状态的调用结果环,按位记录失败及慢调用
+    private final byte[]      outcomes;
+    private volatile State    state   = State.CLOSED;
+    private int               index;
+    private int               count;
+    private int               failures;
+    private int               slowCalls;
+    private long              openUntil;
+    // 半开状态已放行及已成功的探测调用数
+    private int               probes;
+    private int               probeSuccesses;
+    private long              rejected;
+
+    CircuitBreaker(String name, CircuitBreakerPolicy policy) {
+        this.name = name;
+        this.windowSize = policy.getWindowSize();
+        this.minimumCalls = Math.min(policy.getMinimumCalls(), windowSize);
+        this.failureRateThreshold = policy.getFailureRateThreshold();
+        this.slowCallMillis = policy.getSlowCallMillis();
+        this.slowCallRateThreshold = policy.getSlowCallRateThreshold();
+        this.openMillis = policy.getOpenMillis();
+        this.halfOpenCalls = policy.getHalfOpenCalls();
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * 熔断器名称
+     * 
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前状态,熔断到期后在下一次调用时进入半开
+     * 
+     * @return
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 被拒绝的调用数
+     * 
+     * @return
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * 申请调用
+     * 
+     * @return false表示熔断中,调用应立即失败
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    rejected++;
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probes = 0;
+                probeSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probes >= halfOpenCalls) {
+                    rejected++;
+                    return false;
+                }
+                probes++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 报告调用结果
+     * 
+     * @param failure 是否通信失败
+     * @param elapsedMillis 调用耗时
+     */
+    public synchronized void onResult(boolean failure, long elapsedMillis) {
+        boolean slow = slowCallMillis > 0 && elapsedMillis >= slowCallMillis;
+        if (state == State.HALF_OPEN) {
+            if (failure || slow) {
+                open();
+            } else if (++probeSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // 熔断前发出的调用
+            return;
+        }
+
+        byte outcome = (byte) ((failure ? FAILURE : 0) | (slow ? SLOW : 0));
+        if (count == windowSize) {
+            byte evicted = outcomes[index];
+            failures -= evicted & FAILURE;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            count++;
+        }
+        outcomes[index] = outcome;
+        index = (index + 1) % windowSize;
+        failures += outcome & FAILURE;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (count >= minimumCalls
+                && (failures >= failureRateThreshold * count || slowCalls >= slowCallRateThreshold * count)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+    }
+
+    private void close() {
+        index = 0;
+        count = 0;
+        failures = 0;
+        slowCalls = 0;
+        state = State.CLOSED;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + state + "]";
+    }
+}
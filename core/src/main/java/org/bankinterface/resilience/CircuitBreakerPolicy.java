@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 熔断策略,{@link CircuitBreaker}的阈值配置.
+ * 
+ * <pre>
+ * 关闭状态下记录最近windowSize次调用,调用数达到minimumCalls后,
+ * 通信失败比例达到failureRateThreshold,或耗时不少于slowCallMillis的比例达到slowCallRateThreshold时熔断.
+ * 熔断openMillis后进入半开状态,放行halfOpenCalls次探测调用,全部成功且不慢则关闭,否则再次熔断.
+ * </pre>
+ */
+public class CircuitBreakerPolicy {
+    private int    windowSize            = 50;
+    private int    minimumCalls          = 20;
+    private double failureRateThreshold  = 0.5;
+    private long   slowCallMillis        = 2000;
+    private double slowCallRateThreshold = 0.8;
+    private long   openMillis            = 10000;
+    private int    halfOpenCalls         = 3;
+
+    /**
+     * 创建按本策略判断的熔断器
+     * 
+     * @param name
+     * @return
+     */
+    public CircuitBreaker newCircuitBreaker(String name) {
+        return new CircuitBreaker(name, this);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 统计窗口调用数,默认50
+     * 
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * 开始判断熔断的最少调用数,默认20
+     * 
+     * @param minimumCalls
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * 通信失败比例阈值,默认0.5
+     * 
+     * @param failureRateThreshold
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    /**
+     * 慢调用耗时(毫秒),默认2000,不大于0时不判断慢调用
+     * 
+     * @param slowCallMillis
+     */
+    public void setSlowCallMillis(long slowCallMillis) {
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * 慢调用比例阈值,默认0.8
+     * 
+     * @param slowCallRateThreshold
+     */
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * 熔断持续时间(毫秒),默认10000
+     * 
+     * @param openMillis
+     */
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * 半开状态放行的探测调用数,默认3
+     * 
+     * @param halfOpenCalls
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("halfOpenCalls must be positive");
+        }
+        this.halfOpenCalls = halfOpenCalls;
+    }
+}
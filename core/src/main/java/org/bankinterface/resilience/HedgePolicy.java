@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 对冲请求策略,{@link Hedger}的参数配置.
+ * 
+ * <pre>
+ * 请求发出percentile分位耗时(不少于minimumDelayMillis)后仍无响应时,再发送一次相同请求,取先返回者.
+ * 对冲数不超过请求数的maxHedgeRatio,样本数不足minimumSamples时不对冲.
+ * 只适用于只读的查询请求.
+ * </pre>
+ */
+public class HedgePolicy {
+    private double percentile         = 0.95;
+    private long   minimumDelayMillis = 20;
+    private double maxHedgeRatio      = 0.05;
+    private int    windowSize         = 200;
+    private int    minimumSamples     = 20;
+
+    /**
+     * 创建按本策略对冲的对冲器
+     * 
+     * @return
+     */
+    public Hedger newHedger() {
+        return new Hedger(this);
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * 触发对冲的耗时分位数,默认0.95
+     * 
+     * @param percentile
+     */
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+        this.percentile = percentile;
+    }
+
+    public long getMinimumDelayMillis() {
+        return minimumDelayMillis;
+    }
+
+    /**
+     * 对冲前的最短等待(毫秒),默认20
+     * 
+     * @param minimumDelayMillis
+     */
+    public void setMinimumDelayMillis(long minimumDelayMillis) {
+        this.minimumDelayMillis = minimumDelayMillis;
+    }
+
+    public double getMaxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    /**
+     * 对冲数占请求数的上限,默认0.05
+     * 
+     * @param maxHedgeRatio
+     */
+    public void setMaxHedgeRatio(double maxHedgeRatio) {
+        if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("maxHedgeRatio must be in [0, 1]");
+        }
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 统计的最近调用数,默认200
+     * 
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    /**
+     * 开始对冲的最少样本数,默认20
+     * 
+     * @param minimumSamples
+     */
+    public void setMinimumSamples(int minimumSamples) {
+        this.minimumSamples = minimumSamples;
+    }
+}
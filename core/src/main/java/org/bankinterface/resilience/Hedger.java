@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 单个请求地址的对冲器,按{@link HedgePolicy}给出对冲等待时间并控制对冲预算.
+ * 预算为令牌桶:每个请求存入maxHedgeRatio个令牌,每次对冲取出一个,令牌不足时不对冲.
+ * 
+ */
+public class Hedger {
+    // 令牌上限,允许少量连续对冲
+    private static final double MAX_TOKENS = 10;
+
+    private final double        percentile;
+    private final long          minimumDelayMillis;
+    private final double        ratio;
+    private final LatencyWindow window;
+    private double              tokens;
+    private long                requests;
+    private long                hedges;
+    private long                hedgeWins;
+
+    Hedger(HedgePolicy policy) {
+        this.percentile = policy.getPercentile();
+        this.minimumDelayMillis = policy.getMinimumDelayMillis();
+        this.ratio = policy.getMaxHedgeRatio();
+        this.window = new LatencyWindow(policy.getWindowSize(), policy.getMinimumSamples());
+    }
+
+    /**
+     * 对冲等待时间
+     * 
+     * @return 样本数不足时返回-1,不对冲
+     */
+    public long getDelayMillis() {
+        long latency = window.getPercentile(percentile);
+        return latency < 0 ? -1 : Math.max(latency, minimumDelayMillis);
+    }
+
+    /**
+     * 记录一次请求,存入对冲预算
+     */
+    public synchronized void onRequest() {
+        requests++;
+        tokens = Math.min(MAX_TOKENS, tokens + ratio);
+    }
+
+    /**
+     * 申请对冲
+     * 
+     * @return false表示超出对冲预算
+     */
+    public synchronized boolean tryHedge() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        hedges++;
+        return true;
+    }
+
+    /**
+     * 记录请求得到响应的耗时
+     * 
+     * @param elapsedMillis
+     * @param hedgeWon 是否由对冲请求先返回
+     */
+    public void onResponse(long elapsedMillis, boolean hedgeWon) {
+        window.record(elapsedMillis);
+        if (hedgeWon) {
+            synchronized (this) {
+                hedgeWins++;
+            }
+        }
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * 已发送的对冲请求数
+     * 
+     * @return
+     */
+    public synchronized long getHedgeCount() {
+        return hedges;
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     * 
+     * @return
+     */
+    public synchronized long getHedgeWinCount() {
+        return hedgeWins;
+    }
+}
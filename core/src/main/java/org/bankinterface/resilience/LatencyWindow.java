@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近调用耗时窗口,记录最近size次耗时(毫秒),按需给出分位数.
+ * 每记录size/20次在锁外重新排序一次,分位数读取不加锁.
+ * 
+ */
+public class LatencyWindow {
+    private final int      minimumSamples;
+    private final int      recomputeInterval;
+    private final int[]    samples;
+    private int            index;
+    private int            count;
+    private int            sinceRecompute;
+    // 最近一次排序的样本
+    private volatile int[] sorted;
+
+    /**
+     * @param size 窗口大小
+     * @param minimumSamples 样本数达到后才给出分位数
+     */
+    public LatencyWindow(int size, int minimumSamples) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.minimumSamples = Math.max(1, Math.min(minimumSamples, size));
+        this.recomputeInterval = Math.max(1, size / 20);
+        this.samples = new int[size];
+    }
+
+    /**
+     * 记录一次耗时
+     * 
+     * @param millis
+     */
+    public void record(long millis) {
+        int[] copy = null;
+        synchronized (this) {
+            samples[index] = (int) Math.max(0, Math.min(millis, Integer.MAX_VALUE));
+            index = (index + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            // 样本数刚达到时立即排序,此后每recomputeInterval次排序一次
+            if (count >= minimumSamples && (sorted == null || ++sinceRecompute >= recomputeInterval)) {
+                sinceRecompute = 0;
+                copy = Arrays.copyOf(samples, count);
+            }
+        }
+        if (copy != null) {
+            // 并发的重新计算互相覆盖,结果相近
+            Arrays.sort(copy);
+            sorted = copy;
+        }
+    }
+
+    /**
+     * 耗时分位数
+     * 
+     * @param percentile (0, 1]
+     * @return 样本数不足时返回-1
+     */
+    public long getPercentile(double percentile) {
+        int[] values = sorted;
+        if (values == null) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percentile * values.length) - 1;
+        return values[Math.max(0, Math.min(rank, values.length - 1))];
+    }
+}
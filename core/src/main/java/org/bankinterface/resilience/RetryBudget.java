@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+/**
+ * 支付机构的重试预算,同一支付机构所有服务类型的重试共享.
+ * 预算为令牌桶:每个首次请求存入ratio个令牌,每次重试取出一个,令牌不足时不重试,
+ * 因此持续故障时重试数不超过请求数的ratio,不会放大对支付机构的压力.
+ * 
+ */
+public class RetryBudget {
+    /** 默认重试数占请求数的上限 */
+    public static final double DEFAULT_RATIO = 0.1;
+    // 令牌上限,允许少量连续重试
+    private static final double MAX_TOKENS = 10;
+
+    private final double ratio;
+    private double       tokens;
+    private long         requests;
+    private long         retries;
+    private long         exhausted;
+
+    public RetryBudget() {
+        this(DEFAULT_RATIO);
+    }
+
+    /**
+     * @param ratio 重试数占请求数的上限
+     */
+    public RetryBudget(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("ratio must be in [0, 1]");
+        }
+        this.ratio = ratio;
+    }
+
+    /**
+     * 记录一次首次请求,存入重试预算
+     */
+    public synchronized void onRequest() {
+        requests++;
+        tokens = Math.min(MAX_TOKENS, tokens + ratio);
+    }
+
+    /**
+     * 申请重试
+     * 
+     * @return false表示超出重试预算
+     */
+    public synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            exhausted++;
+            return false;
+        }
+        tokens--;
+        retries++;
+        return true;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * 已发送的重试数
+     * 
+     * @return
+     */
+    public synchronized long getRetryCount() {
+        return retries;
+    }
+
+    /**
+     * 因预算不足放弃的重试数
+     * 
+     * @return
+     */
+    public synchronized long getExhaustedCount() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试策略,通信失败后按指数退避加全抖动等待再重试.
+ * 
+ * <pre>
+ * 第n次重试(n从0开始)前等待[0, min(maxDelayMillis, baseDelayMillis * 2^n)]之间的随机时间,
+ * 避免大量调用方在同一时刻重试.包括首次在内最多发送maxAttempts次,且受{@link RetryBudget}限制.
+ * 只应用于幂等的请求(如查询).
+ * </pre>
+ */
+public class RetryPolicy {
+    private int  maxAttempts     = 3;
+    private long baseDelayMillis = 100;
+    private long maxDelayMillis  = 2000;
+
+    /**
+     * 第retries次重试前的等待时间
+     * 
+     * @param retries 已重试次数
+     * @return
+     */
+    public long getBackoffMillis(int retries) {
+        long cap;
+        if (retries >= Long.numberOfLeadingZeros(baseDelayMillis)) {
+            // 左移将溢出,已超过任何上限
+            cap = baseDelayMillis == 0 ? 0 : maxDelayMillis;
+        } else {
+            cap = Math.min(maxDelayMillis, baseDelayMillis << retries);
+        }
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 包括首次在内的最多发送次数,默认3,1表示不重试
+     * 
+     * @param maxAttempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    /**
+     * 退避基数(毫秒),默认100
+     * 
+     * @param baseDelayMillis
+     */
+    public void setBaseDelayMillis(long baseDelayMillis) {
+        if (baseDelayMillis < 0) {
+            throw new IllegalArgumentException("baseDelayMillis must not be negative");
+        }
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * 单次等待上限(毫秒),默认2000
+     * 
+     * @param maxDelayMillis
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must not be negative");
+        }
+        this.maxDelayMillis = maxDelayMillis;
+    }
+}
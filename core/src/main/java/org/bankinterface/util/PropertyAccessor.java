@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+/**
+ * 属性读取器,由{@link PropertyAccessorFactory}针对某个类型和属性路径预先解析生成
+ *
+ */
+public abstract class PropertyAccessor {
+    /** 路径无法解析:属性不存在或中间值为null */
+    static final Object UNRESOLVED = new Object();
+
+    /**
+     * 读取属性值,路径中任一中间值为null时返回null
+     *
+     * @param bean
+     * @return
+     * @throws Exception getter调用失败
+     */
+    public abstract Object get(Object bean) throws Exception;
+
+    /**
+     * 读取属性值,区分值为null与路径无法解析
+     *
+     * @param bean
+     * @return 路径无法解析时返回{@link #UNRESOLVED}
+     * @throws Exception getter调用失败
+     */
+    Object resolve(Object bean) throws Exception {
+        return get(bean);
+    }
+}
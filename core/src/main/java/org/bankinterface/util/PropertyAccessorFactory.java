@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 属性读取器工厂,按类型缓存解析好的读取器.
+ *
+ * <pre>
+ * orderNo                  普通属性
+ * config.merchantNo        嵌套属性,中间值为Map时按键取值
+ * orderNo|orderDate        组合属性,结果为List,任一属性不存在或中间值为null时为null
+ * items[0] / config(key)   索引/映射属性,交由commons-beanutils处理
+ * </pre>
+ *
+ */
+public class PropertyAccessorFactory {
+    private static final Logger           logger        = LoggerFactory.getLogger(PropertyAccessorFactory.class);
+    private static final MethodType       GETTER_TYPE   = MethodType.methodType(Object.class, Object.class);
+    private static final PropertyAccessor NULL_ACCESSOR = new NullAccessor();
+    // 读取器缓存
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyAccessor>> accessorCache =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, PropertyAccessor>>();
+    // getter缓存
+    private static final ConcurrentMap<Class<?>, Map<String, Method>> readMethodCache =
+            new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+
+    /**
+     * 获得指定类型,指定属性路径的读取器
+     *
+     * @param beanClass
+     * @param mapping 属性路径,用|分割可获得List结果集
+     * @return 属性不存在时返回的读取器始终读取null
+     */
+    public static PropertyAccessor getAccessor(Class<?> beanClass, String mapping) {
+        ConcurrentMap<String, PropertyAccessor> accessors = accessorCache.get(beanClass);
+        if (accessors == null) {
+            accessors = new ConcurrentHashMap<String, PropertyAccessor>();
+            ConcurrentMap<String, PropertyAccessor> existing = accessorCache.putIfAbsent(beanClass, accessors);
+            if (existing != null) {
+                accessors = existing;
+            }
+        }
+        PropertyAccessor accessor = accessors.get(mapping);
+        if (accessor == null) {
+            accessor = compile(beanClass, mapping);
+            accessors.put(mapping, accessor);
+        }
+        return accessor;
+    }
+
+    private static PropertyAccessor compile(Class<?> beanClass, String mapping) {
+        if (mapping.indexOf('|') < 0) {
+            return compilePath(beanClass, mapping, true);
+        }
+        List<PropertyAccessor> accessors = new ArrayList<PropertyAccessor>();
+        for (String property : mapping.split("\\|")) {
+            if (Utils.isEmpty(property)) {
+                continue;
+            }
+            accessors.add(compilePath(beanClass, property, true));
+        }
+        return new CompositeAccessor(accessors.toArray(new PropertyAccessor[accessors.size()]));
+    }
+
+    private static PropertyAccessor compilePath(Class<?> beanClass, String path, boolean isRoot) {
+        if (path.indexOf('[') >= 0 || path.indexOf('(') >= 0) {
+            return new BeanUtilsAccessor(path);
+        }
+        int dot = path.indexOf('.');
+        String name = dot < 0 ? path : path.substring(0, dot);
+        String rest = dot < 0 ? null : path.substring(dot + 1);
+
+        if (Map.class.isAssignableFrom(beanClass)) {
+            return new MapAccessor(name, rest == null ? null : new DynamicAccessor(rest));
+        }
+
+        Method readMethod = getReadMethods(beanClass).get(name);
+        if (readMethod == null) {
+            // 嵌套属性在声明类型上不存在时,运行时由实际类型解析
+            if (!isRoot) {
+                return new DynamicAccessor(path);
+            }
+            logger.warn("No readable property '" + name + "' on " + beanClass.getName());
+            return NULL_ACCESSOR;
+        }
+        MethodHandle handle = unreflect(readMethod);
+        if (handle == null) {
+            return new BeanUtilsAccessor(path);
+        }
+        PropertyAccessor next = null;
+        if (rest != null) {
+            next = compilePath(readMethod.getReturnType(), rest, false);
+        }
+        return new GetterAccessor(handle, next);
+    }
+
+    private static Map<String, Method> getReadMethods(Class<?> beanClass) {
+        Map<String, Method> readMethods = readMethodCache.get(beanClass);
+        if (readMethods == null) {
+            readMethods = new HashMap<String, Method>();
+            try {
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                    if (descriptor.getReadMethod() != null) {
+                        readMethods.put(descriptor.getName(), descriptor.getReadMethod());
+                    }
+                }
+            } catch (IntrospectionException e) {
+                logger.warn("Introspect " + beanClass.getName() + " Error!", e);
+            }
+            readMethodCache.put(beanClass, readMethods);
+        }
+        return readMethods;
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+    }
+
+    static class NullAccessor extends PropertyAccessor {
+        @Override
+        public Object get(Object bean) {
+            return null;
+        }
+
+        @Override
+        Object resolve(Object bean) {
+            return UNRESOLVED;
+        }
+    }
+
+    static class GetterAccessor extends PropertyAccessor {
+        private final MethodHandle     handle;
+        private final PropertyAccessor next;
+
+        GetterAccessor(MethodHandle handle, PropertyAccessor next) {
+            this.handle = handle;
+            this.next = next;
+        }
+
+        @Override
+        public Object get(Object bean) throws Exception {
+            Object value = resolve(bean);
+            return value == UNRESOLVED ? null : value;
+        }
+
+        @Override
+        Object resolve(Object bean) throws Exception {
+            if (bean == null) {
+                return UNRESOLVED;
+            }
+            Object value;
+            try {
+                value = (Object) handle.invokeExact(bean);
+            } catch (Exception e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UndeclaredThrowableException(t);
+            }
+            if (next == null) {
+                return value;
+            }
+            return value == null ? UNRESOLVED : next.resolve(value);
+        }
+    }
+
+    static class MapAccessor extends PropertyAccessor {
+        private final String           key;
+        private final PropertyAccessor next;
+
+        MapAccessor(String key, PropertyAccessor next) {
+            this.key = key;
+            this.next = next;
+        }
+
+        @Override
+        public Object get(Object bean) throws Exception {
+            Object value = resolve(bean);
+            return value == UNRESOLVED ? null : value;
+        }
+
+        @Override
+        Object resolve(Object bean) throws Exception {
+            if (bean == null) {
+                return UNRESOLVED;
+            }
+            Object value = ((Map<?, ?>) bean).get(key);
+            if (next == null) {
+                return value;
+            }
+            return value == null ? UNRESOLVED : next.resolve(value);
+        }
+    }
+
+    static class DynamicAccessor extends PropertyAccessor {
+        private final String path;
+
+        DynamicAccessor(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public Object get(Object bean) throws Exception {
+            if (bean == null) {
+                return null;
+            }
+            return getAccessor(bean.getClass(), path).get(bean);
+        }
+
+        @Override
+        Object resolve(Object bean) throws Exception {
+            if (bean == null) {
+                return UNRESOLVED;
+            }
+            return getAccessor(bean.getClass(), path).resolve(bean);
+        }
+    }
+
+    static class BeanUtilsAccessor extends PropertyAccessor {
+        private final String path;
+
+        BeanUtilsAccessor(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public Object get(Object bean) throws Exception {
+            if (bean == null) {
+                return null;
+            }
+            return PropertyUtils.getProperty(bean, path);
+        }
+    }
+
+    static class CompositeAccessor extends PropertyAccessor {
+        private final PropertyAccessor[] accessors;
+
+        CompositeAccessor(PropertyAccessor[] accessors) {
+            this.accessors = accessors;
+        }
+
+        // 任一属性无法解析时整体为null,由调用方使用默认值
+        @Override
+        public Object get(Object bean) throws Exception {
+            List<Object> values = new ArrayList<Object>(accessors.length);
+            Object value;
+            for (int i = 0; i < accessors.length; i++) {
+                value = accessors[i].resolve(bean);
+                if (value == UNRESOLVED) {
+                    return null;
+                }
+                values.add(value);
+            }
+            return values;
+        }
+    }
+}
@@ -45,4 +45,20 @@ public interface Verifier {
      */
     public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
             Notification notification) throws SignVerifyException;
+
+    /**
+     * 按通知原始字节验证并解密,默认解码后按通知內容验证
+     * 
+     * @param signedField
+     * @param joinStyle
+     * @param signatureKey
+     * @param notification
+     * @param rawContent
+     * @return
+     * @throws SignVerifyException
+     */
+    default Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+            Notification notification, byte[] rawContent) throws SignVerifyException {
+        return verify(signedField, joinStyle, signatureKey, notification);
+    }
 }
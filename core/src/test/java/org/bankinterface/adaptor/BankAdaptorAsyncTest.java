@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.param.AsyncPayParam;
+import org.bankinterface.param.Notification;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.result.Result;
+import org.bankinterface.resilience.Bulkhead;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BankAdaptorAsyncTest {
+    private TestBank       bank     = new TestBank();
+    private Bulkhead       bulkhead = new Bulkhead("test", 1, 0);
+    private CountDownLatch release  = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        bank.init();
+        bank.setBulkhead(bulkhead);
+        final CountDownLatch started = new CountDownLatch(1);
+        bulkhead.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+
+    @Test
+    public void testRejectedEntryPointsCompleteWithCommunicationError() throws Exception {
+        Notification notification = new Notification(null);
+        assertRejected(bank.prePayAsync(new AsyncPayParam()));
+        assertRejected(bank.resolveAsyncPayResultAsync(notification));
+        assertRejected(bank.resolveSyncPayResultAsync(notification));
+        assertRejected(bank.resolveRefundResultAsync(notification));
+        QueryParam batch = QueryParam.batchPayQueryParam();
+        batch.setItems(Collections.singletonList(QueryParam.payQueryParam()));
+        assertRejected(bank.queryAsync(batch));
+        assertRejected(bank.queryAsync(QueryParam.payQueryParam()));
+        assertTrue(bulkhead.getRejectedCount() >= 6);
+    }
+
+    private void assertRejected(CompletableFuture<? extends Result> future) throws Exception {
+        assertTrue(future.isDone());
+        assertEquals(Result.COMMUNICTION_ERROR, future.get().getStatus());
+    }
+}
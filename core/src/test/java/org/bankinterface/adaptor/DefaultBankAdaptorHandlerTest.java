@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.param.Notification;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.resilience.Bulkhead;
+import org.bankinterface.resilience.HedgePolicy;
+import org.bankinterface.resilience.RetryBudget;
+import org.bankinterface.resilience.RetryPolicy;
+import org.bankinterface.result.QueryResult;
+import org.bankinterface.result.Result;
+import org.bankinterface.util.HttpEngine;
+import org.bankinterface.util.HttpRequest;
+import org.bankinterface.util.HttpResponse;
+import org.bankinterface.verifier.Verifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class DefaultBankAdaptorHandlerTest {
+    private static final byte[] RESPONSE = "order_no=42&serial_no=S1".getBytes();
+    private TestBank            bank     = new TestBank();
+    private Bulkhead            bulkhead = new Bulkhead("test", 1, 0);
+    private CountDownLatch      release  = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        bank.init();
+        bank.setBulkhead(bulkhead);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+
+    @Test
+    public void testBatchItemsRunOnBulkhead() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/query", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            respond(exchange);
+        });
+        server.start();
+        Bulkhead batchBulkhead = new Bulkhead("batch", 2, 2);
+        try {
+            // 批量并发数为隔离舱线程数,超出的明细等待许可而不是被拒绝
+            bank.setBulkhead(batchBulkhead);
+            QueryParam batch = batchQuery("http://127.0.0.1:" + server.getAddress().getPort() + "/query", 5);
+
+            // 异步批量请求不占用隔离舱线程等待明细
+            QueryResult result = bank.queryAsync(batch).get(10, TimeUnit.SECONDS);
+            assertItemsSucceeded(result, 5);
+            assertEquals(2, maxInFlight.get());
+
+            result = bank.query(batch);
+            assertItemsSucceeded(result, 5);
+            assertEquals(2, maxInFlight.get());
+            assertEquals(0, batchBulkhead.getRejectedCount());
+        } finally {
+            batchBulkhead.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRejectedBatchItemsCounted() throws Exception {
+        occupyBulkhead();
+        QueryResult result = bank.queryAsync(batchQuery("http://127.0.0.1:1/query", 3)).get(5, TimeUnit.SECONDS);
+        // 全部明细均未发送
+        assertEquals(Result.COMMUNICTION_ERROR, result.getStatus());
+        assertEquals(3, result.getItems().size());
+        for (QueryResult item : result.getItems()) {
+            assertEquals(Result.COMMUNICTION_ERROR, item.getStatus());
+        }
+        assertEquals(3, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testResponseResolvedWhenBulkheadFull() throws Exception {
+        final CompletableFuture<HttpResponse> response = new CompletableFuture<HttpResponse>();
+        ((DefaultBankAdaptorHandler) bank.getHandler()).setHttpEngine(new HttpEngine() {
+            public CompletableFuture<HttpResponse> execute(HttpRequest request) {
+                return response;
+            }
+        });
+        QueryParam param = QueryParam.payQueryParam();
+        param.setOrderNo("42");
+        param.getConfig().put("merchantNo", "M1");
+        param.getConfig().put("requestUrl", "http://127.0.0.1:1/query");
+        CompletableFuture<QueryResult> future = bank.queryAsync(param);
+
+        // 请求已发送后隔离舱占满
+        occupyBulkhead();
+        assertFalse(future.isDone());
+
+        Map<String, List<String>> headers = Collections.emptyMap();
+        response.complete(new HttpResponse(200, "OK", headers, RESPONSE));
+        QueryResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(Result.SUCCESS, result.getStatus());
+    }
+
+    @Test
+    public void testHedgingOnBulkhead() throws Exception {
+        final AtomicInteger primaryCalls = new AtomicInteger();
+        final AtomicInteger backupCalls = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/primary", exchange -> {
+            if (primaryCalls.incrementAndGet() > 1) {
+                // 首次之后主请求变慢
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange);
+        });
+        server.createContext("/backup", exchange -> {
+            backupCalls.incrementAndGet();
+            respond(exchange);
+        });
+        server.start();
+        try {
+            HedgePolicy policy = new HedgePolicy();
+            policy.setMinimumSamples(1);
+            policy.setMinimumDelayMillis(20);
+            policy.setMaxHedgeRatio(1);
+            DefaultBankAdaptorHandler handler = (DefaultBankAdaptorHandler) bank.getHandler();
+            handler.setHedgePolicy(policy);
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+            // 首次请求积累耗时样本,不对冲
+            assertEquals(Result.SUCCESS, bank.query(hedgedQuery(base)).getStatus());
+            assertEquals(0, backupCalls.get());
+
+            // 两次请求均不占用唯一的隔离舱线程,对冲请求先返回即结束
+            long begin = System.currentTimeMillis();
+            QueryResult result = bank.queryAsync(hedgedQuery(base)).get(5, TimeUnit.SECONDS);
+            assertEquals(result.getMessage(), Result.SUCCESS, result.getStatus());
+            assertEquals(1, backupCalls.get());
+            assertTrue(System.currentTimeMillis() - begin < 800);
+
+            begin = System.currentTimeMillis();
+            result = bank.query(hedgedQuery(base));
+            assertEquals(result.getMessage(), Result.SUCCESS, result.getStatus());
+            assertEquals(2, backupCalls.get());
+            assertTrue(System.currentTimeMillis() - begin < 800);
+            assertEquals(3, primaryCalls.get());
+            assertEquals(0, bulkhead.getRejectedCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testAsyncRetry() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/query", exchange -> {
+            if (calls.incrementAndGet() <= 2) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange);
+        });
+        server.start();
+        try {
+            // 重试在默认执行器中执行
+            TestBank bank = new TestBank();
+            bank.init();
+            DefaultBankAdaptorHandler handler = (DefaultBankAdaptorHandler) bank.getHandler();
+            RetryPolicy policy = new RetryPolicy();
+            policy.setBaseDelayMillis(5);
+            handler.setRetryPolicy(ServiceType.QUERY, policy);
+            RetryBudget budget = new RetryBudget(1);
+            budget.onRequest();
+            handler.setRetryBudget(budget);
+
+            QueryParam param = QueryParam.payQueryParam();
+            param.setOrderNo("42");
+            param.getConfig().put("merchantNo", "M1");
+            param.getConfig().put("requestUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/query");
+            QueryResult result = bank.queryAsync(param).get(5, TimeUnit.SECONDS);
+            assertEquals(result.getMessage(), Result.SUCCESS, result.getStatus());
+            assertEquals(3, calls.get());
+            assertEquals(2, budget.getRetryCount());
+
+            // 预算用尽后不再重试
+            calls.set(0);
+            result = bank.queryAsync(param).get(5, TimeUnit.SECONDS);
+            assertEquals(Result.COMMUNICTION_ERROR, result.getStatus());
+            assertEquals(2, calls.get());
+            assertEquals(3, budget.getRetryCount());
+            assertEquals(1, budget.getExhaustedCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // 占用隔离舱唯一的线程直到测试结束
+    @Test
+    public void testRawContentHandedToVerifier() throws Exception {
+        final List<byte[]> verified = new ArrayList<byte[]>();
+        bank.registerVerifier(new Verifier() {
+            public String getName() {
+                return TestBank.SIGNER;
+            }
+
+            public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+                    Notification notification) throws SignVerifyException {
+                throw new SignVerifyException("decoded content verified");
+            }
+
+            @Override
+            public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+                    Notification notification, byte[] rawContent) throws SignVerifyException {
+                verified.add(rawContent);
+                return TestBank.parse(new String(rawContent));
+            }
+        });
+        Notification notification = new Notification(QueryParam.payQueryParam());
+        notification.setRawContent(RESPONSE);
+
+        Map<String, String> map = ((DefaultBankAdaptorHandler) bank.getHandler()).verifyNotification(notification);
+
+        assertEquals("42", map.get("order_no"));
+        assertEquals(1, verified.size());
+        assertSame(RESPONSE, verified.get(0));
+    }
+
+    private void occupyBulkhead() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                bulkhead.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                break;
+            } catch (RejectedExecutionException e) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private static QueryParam batchQuery(String url, int size) {
+        QueryParam batch = QueryParam.batchPayQueryParam();
+        batch.getConfig().put("merchantNo", "M1");
+        batch.getConfig().put("requestUrl", url);
+        List<QueryParam> items = new ArrayList<QueryParam>();
+        for (int i = 0; i < size; i++) {
+            QueryParam item = QueryParam.payQueryParam();
+            item.setOrderNo("42");
+            items.add(item);
+        }
+        batch.setItems(items);
+        return batch;
+    }
+
+    private static void assertItemsSucceeded(QueryResult result, int size) {
+        assertEquals(size, result.getItems().size());
+        for (QueryResult item : result.getItems()) {
+            assertEquals(item.getMessage(), Result.SUCCESS, item.getStatus());
+        }
+    }
+
+    private static QueryParam hedgedQuery(String base) {
+        QueryParam param = QueryParam.payQueryParam();
+        param.setOrderNo("42");
+        param.getConfig().put("merchantNo", "M1");
+        param.getConfig().put("requestUrl", base + "/primary");
+        param.getConfig().put("backupRequestUrl", base + "/backup");
+        return param;
+    }
+
+    private static void respond(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, RESPONSE.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(RESPONSE);
+        }
+    }
+}
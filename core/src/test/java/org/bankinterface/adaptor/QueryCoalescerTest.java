@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.builder.ResultBuilder;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.result.QueryResult;
+import org.bankinterface.result.Result;
+import org.junit.Test;
+
+public class QueryCoalescerTest {
+
+    @Test
+    public void testSplitsBatchResult() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 3, 10000);
+        List<CompletableFuture<QueryResult>> futures = new ArrayList<CompletableFuture<QueryResult>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(coalescer.query(query("M1", "O" + i)));
+        }
+        assertEquals(1, bank.sent.size());
+        QueryParam batch = bank.sent.get(0);
+        assertEquals(ServiceType.BATCH_QUERY, batch.getServiceType());
+        assertEquals(3, batch.getItems().size());
+        assertEquals("M1", batch.getConfig().get("merchantNo"));
+
+        QueryResult result = result(Result.SUCCESS);
+        List<QueryResult> items = new ArrayList<QueryResult>();
+        for (QueryParam item : batch.getItems()) {
+            QueryResult itemResult = result(Result.SUCCESS);
+            itemResult.setOrderNo(item.getOrderNo());
+            items.add(itemResult);
+        }
+        result.setItems(items);
+        bank.results.get(0).complete(result);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("O" + i, futures.get(i).get(1, TimeUnit.SECONDS).getOrderNo());
+        }
+        assertEquals(1, coalescer.getBatchCount());
+        assertEquals(3, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testBatchFailureCopiedToItems() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 2, 10000);
+        CompletableFuture<QueryResult> first = coalescer.query(query("M1", "O1"));
+        CompletableFuture<QueryResult> second = coalescer.query(query("M1", "O2"));
+        QueryResult result = result(Result.COMMUNICTION_ERROR);
+        result.setMessage("timeout");
+        bank.results.get(0).complete(result);
+        assertEquals(Result.COMMUNICTION_ERROR, first.get().getStatus());
+        assertEquals("timeout", second.get().getMessage());
+    }
+
+    @Test
+    public void testMaxSizeFlushesAndKeysSeparate() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 2, 10000);
+        coalescer.query(query("M1", "O1"));
+        coalescer.query(query("M2", "O2"));
+        assertTrue(bank.sent.isEmpty());
+        coalescer.query(query("M1", "O3"));
+        assertEquals(1, bank.sent.size());
+        assertEquals(2, bank.sent.get(0).getItems().size());
+        // a new batch starts after the full one
+        coalescer.query(query("M1", "O4"));
+        assertEquals(1, bank.sent.size());
+        assertEquals(1, coalescer.getBatchCount());
+    }
+
+    @Test
+    public void testTimerFlush() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 10, 20);
+        coalescer.query(query("M1", "O1"));
+        coalescer.query(query("M1", "O2"));
+        CompletableFuture<QueryResult> single = coalescer.query(query("M2", "O3"));
+        assertTrue(bank.sent.isEmpty());
+        assertTrue(bank.await(2, 2000));
+
+        QueryParam singleParam = null;
+        for (QueryParam param : bank.sent) {
+            if (ServiceType.QUERY.equals(param.getServiceType())) {
+                singleParam = param;
+            } else {
+                assertEquals(2, param.getItems().size());
+            }
+        }
+        // a batch of one is sent as the query itself
+        assertEquals("O3", singleParam.getOrderNo());
+        bank.results.get(bank.sent.indexOf(singleParam)).complete(result(Result.SUCCESS));
+        assertEquals(Result.SUCCESS, single.get(1, TimeUnit.SECONDS).getStatus());
+        assertEquals(1, coalescer.getBatchCount());
+    }
+
+    @Test
+    public void testSendFailureOnTimerCompletesAll() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        bank.reject = true;
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 10, 10);
+        CompletableFuture<QueryResult> first = coalescer.query(query("M1", "O1"));
+        CompletableFuture<QueryResult> second = coalescer.query(query("M1", "O2"));
+        assertRejected(first);
+        assertRejected(second);
+    }
+
+    @Test
+    public void testSendFailureOnMaxSizeCompletesAll() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        bank.reject = true;
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 2, 10000);
+        CompletableFuture<QueryResult> first = coalescer.query(query("M1", "O1"));
+        // the caller that fills the batch gets a future, not the exception
+        CompletableFuture<QueryResult> second = coalescer.query(query("M1", "O2"));
+        assertRejected(first);
+        assertRejected(second);
+    }
+
+    @Test
+    public void testExceptionalResultPropagated() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 2, 10000);
+        CompletableFuture<QueryResult> first = coalescer.query(query("M1", "O1"));
+        CompletableFuture<QueryResult> second = coalescer.query(query("M1", "O2"));
+        bank.results.get(0).completeExceptionally(new RejectedExecutionException("full"));
+        assertRejected(first);
+        assertRejected(second);
+    }
+
+    @Test
+    public void testSentIndividuallyWithoutBatchRequest() throws Exception {
+        RecordingBank bank = new RecordingBank();
+        bank.fanOut = true;
+        QueryCoalescer coalescer = new QueryCoalescer(bank, 2, 10000);
+        CompletableFuture<QueryResult> first = coalescer.query(query("M1", "O1"));
+        CompletableFuture<QueryResult> second = coalescer.query(query("M1", "O2"));
+        assertEquals(2, bank.sent.size());
+        for (QueryParam param : bank.sent) {
+            assertEquals(ServiceType.QUERY, param.getServiceType());
+        }
+        bank.results.get(0).complete(result(Result.SUCCESS));
+        bank.results.get(1).complete(result(Result.SYSTEM_ERROR));
+        assertEquals(Result.SUCCESS, first.get(1, TimeUnit.SECONDS).getStatus());
+        assertEquals(Result.SYSTEM_ERROR, second.get(1, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, coalescer.getBatchCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testDefaultHandlerSendsIndividually() throws Exception {
+        TestBank bank = new TestBank();
+        assertFalse(bank.isBatchAllInOne(ServiceType.BATCH_QUERY));
+        bank.init();
+        assertFalse(bank.isBatchAllInOne(ServiceType.BATCH_QUERY));
+    }
+
+    private static void assertRejected(CompletableFuture<QueryResult> future) throws Exception {
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private static QueryParam query(String merchantNo, String orderNo) {
+        QueryParam param = QueryParam.payQueryParam();
+        param.setOrderNo(orderNo);
+        param.setConfig(Collections.singletonMap("merchantNo", merchantNo));
+        return param;
+    }
+
+    private static QueryResult result(String status) {
+        QueryResult result = new ResultBuilder(QueryResult.class).create();
+        result.setStatus(status);
+        return result;
+    }
+
+    // records the queries instead of sending them
+    static class RecordingBank extends BankAdaptor {
+        final List<QueryParam>                     sent    = new CopyOnWriteArrayList<QueryParam>();
+        final List<CompletableFuture<QueryResult>> results = new CopyOnWriteArrayList<CompletableFuture<QueryResult>>();
+        volatile boolean                           reject;
+        volatile boolean                           fanOut;
+
+        @Override
+        public boolean isBatchAllInOne(ServiceType serviceType) {
+            return !fanOut;
+        }
+
+        @Override
+        public CompletableFuture<QueryResult> queryAsync(QueryParam queryParam) {
+            if (reject) {
+                throw new RejectedExecutionException("full");
+            }
+            CompletableFuture<QueryResult> result = new CompletableFuture<QueryResult>();
+            synchronized (this) {
+                sent.add(queryParam);
+                results.add(result);
+                notifyAll();
+            }
+            return result;
+        }
+
+        synchronized boolean await(int count, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (sent.size() < count && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            return sent.size() >= count;
+        }
+    }
+}
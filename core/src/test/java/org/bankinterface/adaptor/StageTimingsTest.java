@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.adaptor;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.result.QueryResult;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class StageTimingsTest {
+
+    @Test
+    public void testLapAccumulatesPerStage() throws Exception {
+        StageTimings timings = new StageTimings("bank", ServiceType.QUERY, true);
+        for (Stage stage : Stage.values()) {
+            assertEquals(-1L, timings.getElapsed(stage));
+        }
+
+        long start = timings.start();
+        Thread.sleep(5);
+        long end = timings.lap(Stage.SEND, start);
+        long first = timings.getElapsed(Stage.SEND);
+        assertEquals(end - start, first);
+
+        start = timings.start();
+        Thread.sleep(5);
+        timings.lap(Stage.SEND, start);
+        assertTrue(timings.getElapsed(Stage.SEND) > first);
+        assertEquals(-1L, timings.getElapsed(Stage.SIGN));
+
+        timings.complete("0");
+        assertEquals("0", timings.getStatus());
+        assertTrue(timings.getTotalTime() >= timings.getElapsed(Stage.SEND));
+        assertTrue(timings.toString().contains(" SEND="));
+        assertFalse(timings.toString().contains(" SIGN="));
+    }
+
+    @Test
+    public void testNoneDoesNotTime() {
+        assertEquals(0L, StageTimings.NONE.start());
+        assertEquals(0L, StageTimings.NONE.lap(Stage.SEND, 1L));
+    }
+
+    @Test
+    public void testListenerReceivesAllStages() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/query", exchange -> {
+            byte[] body = "order_no=42&serial_no=S1".getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            TestBank bank = new TestBank();
+            bank.init();
+            final List<StageTimings> completed = new ArrayList<StageTimings>();
+            ((DefaultBankAdaptorHandler) bank.getHandler()).setStageListener(timings -> completed.add(timings));
+
+            QueryParam param = QueryParam.payQueryParam();
+            param.setOrderNo("42");
+            param.getConfig().put("merchantNo", "M1");
+            param.getConfig().put("requestUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/query");
+            QueryResult result = bank.query(param);
+
+            assertEquals(1, completed.size());
+            StageTimings timings = completed.get(0);
+            assertEquals(ServiceType.QUERY, timings.getServiceType());
+            assertEquals(result.getStatus(), timings.getStatus());
+            long sum = 0;
+            for (Stage stage : Stage.values()) {
+                assertTrue(stage + " not timed", timings.getElapsed(stage) >= 0);
+                sum += timings.getElapsed(stage);
+            }
+            assertTrue(sum <= timings.getTotalTime());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
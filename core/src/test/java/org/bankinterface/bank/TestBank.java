@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.bank;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bankinterface.exception.ConfigException;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.param.Notification;
+import org.bankinterface.param.Parameter;
+import org.bankinterface.signer.Signer;
+import org.bankinterface.verifier.Verifier;
+
+/**
+ * 测试用支付机构,签名为被签名参数的拼接,结果报文为key=value&key=value格式
+ * 
+ */
+public class TestBank extends BaseBank {
+    public static final String SIGNER = "TEST";
+
+    @Override
+    public void init() throws ConfigException {
+        super.init();
+        registerSigner(new Signer() {
+            public String getName() {
+                return SIGNER;
+            }
+
+            public String sign(Map<String, String> contextMap, String[] signedField, String joinStyle,
+                    Parameter parameter) throws SignVerifyException {
+                StringBuilder sb = new StringBuilder();
+                for (String field : signedField) {
+                    sb.append(contextMap.get(field)).append('|');
+                }
+                return sb.toString();
+            }
+        });
+        registerVerifier(new Verifier() {
+            public String getName() {
+                return SIGNER;
+            }
+
+            public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+                    Notification notification) throws SignVerifyException {
+                return parse(notification.getContent());
+            }
+        });
+    }
+
+    /**
+     * 解析key=value&key=value格式的报文
+     * 
+     * @param content
+     * @return
+     */
+    public static Map<String, String> parse(String content) {
+        Map<String, String> map = new HashMap<String, String>();
+        if (content == null) {
+            return map;
+        }
+        for (String pair : content.split("&")) {
+            int i = pair.indexOf('=');
+            if (i > 0) {
+                map.put(pair.substring(0, i), pair.substring(i + 1));
+            }
+        }
+        return map;
+    }
+}
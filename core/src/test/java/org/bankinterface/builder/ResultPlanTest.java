@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.builder;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.converters.DateConverter;
+import org.bankinterface.enums.OrderStatus;
+import org.bankinterface.result.QueryResult;
+import org.bankinterface.result.Result;
+import org.junit.Test;
+
+public class ResultPlanTest {
+
+    @Test
+    public void testSameAsBeanUtils() throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("status", Result.SUCCESS);
+        properties.put("orderNo", "1");
+        properties.put("payAmount", "12.30");
+        properties.put("refundAmount", new BigDecimal("1"));
+        properties.put("count", "7");
+        properties.put("total", "8");
+        properties.put("rate", "0.5");
+        properties.put("level", "3");
+        properties.put("flag", "true");
+        properties.put("merchantNo", null);
+        properties.put("unknown", "ignored");
+
+        TestResult expected = new TestResult();
+        expected.setMerchantNo("M1");
+        BeanUtils.populate(expected, properties);
+        TestResult actual = new TestResult();
+        actual.setMerchantNo("M1");
+        ResultPlan.get(TestResult.class).populate(actual, properties);
+
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getOrderNo(), actual.getOrderNo());
+        assertEquals(expected.getPayAmount(), actual.getPayAmount());
+        assertEquals(expected.getRefundAmount(), actual.getRefundAmount());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getRate(), actual.getRate(), 0);
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.isFlag(), actual.isFlag());
+        assertNull(actual.getMerchantNo());
+    }
+
+    @Test
+    public void testLenientConversionSameAsBeanUtils() throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("count", "x");
+        properties.put("total", "");
+        properties.put("flag", "Y");
+
+        TestResult expected = new TestResult();
+        BeanUtils.populate(expected, properties);
+        TestResult actual = new TestResult();
+        ResultPlan.get(TestResult.class).populate(actual, properties);
+
+        assertEquals(Integer.valueOf(0), actual.getCount());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(0, actual.getTotal());
+        assertTrue(actual.isFlag());
+        for (String value : new String[] { "1", "on", "yes" }) {
+            properties.put("flag", value);
+            actual.setFlag(false);
+            ResultPlan.get(TestResult.class).populate(actual, properties);
+            assertTrue(value, actual.isFlag());
+        }
+    }
+
+    @Test
+    public void testRegisteredConverterUsedForOtherTypes() throws Exception {
+        Converter previous = ConvertUtils.lookup(Date.class);
+        DateConverter converter = new DateConverter();
+        converter.setPattern("yyyyMMdd");
+        ConvertUtils.register(converter, Date.class);
+        try {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put("bankSuccessDate", "20130102");
+            QueryResult expected = new QueryResult();
+            BeanUtils.populate(expected, properties);
+            QueryResult actual = new QueryResult();
+            ResultPlan.get(QueryResult.class).populate(actual, properties);
+            assertNotNull(actual.getBankSuccessDate());
+            assertEquals(expected.getBankSuccessDate(), actual.getBankSuccessDate());
+        } finally {
+            ConvertUtils.register(previous, Date.class);
+        }
+    }
+
+    @Test
+    public void testEnumFromString() {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("orderStatus", OrderStatus.values()[0].name());
+        QueryResult result = new QueryResult();
+        ResultPlan.get(QueryResult.class).populate(result, properties);
+        assertEquals(OrderStatus.values()[0], result.getOrderStatus());
+        assertTrue(ResultPlan.get(QueryResult.class).newInstance() instanceof QueryResult);
+    }
+
+    public static class TestResult extends QueryResult {
+        private Integer count;
+        private long    total;
+        private double  rate;
+        private Short   level;
+        private boolean flag;
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public Short getLevel() {
+            return level;
+        }
+
+        public void setLevel(Short level) {
+            this.level = level;
+        }
+
+        public boolean isFlag() {
+            return flag;
+        }
+
+        public void setFlag(boolean flag) {
+            this.flag = flag;
+        }
+    }
+}
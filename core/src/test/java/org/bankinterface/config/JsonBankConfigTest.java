@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.config;
+
+import static org.junit.Assert.*;
+
+import org.bankinterface.adaptor.DefaultBankAdaptorHandler;
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.util.HttpConnectionManager;
+import org.junit.Test;
+
+public class JsonBankConfigTest {
+
+    @Test
+    public void testConnectionPoolIsOptIn() throws Exception {
+        TestBank bank = new TestBank();
+        bank.init();
+        assertFalse(bank.getBankConfig(null).isConnectionPoolEnabled());
+        assertNull(((DefaultBankAdaptorHandler) bank.getHandler()).getConnectionManager());
+    }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        BankConfig config = new JsonBankConfig("PooledBank");
+        assertTrue(config.isConnectionPoolEnabled());
+        assertEquals(4, config.getConnectionPoolMaxPerRoute());
+        assertEquals(500, config.getConnectionPoolLeaseTimeout());
+        assertEquals(HttpConnectionManager.DEFAULT_IDLE_TIMEOUT, config.getConnectionPoolIdleTimeout());
+    }
+}
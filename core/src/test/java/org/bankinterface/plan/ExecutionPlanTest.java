@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.plan;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bankinterface.bank.TestBank;
+import org.bankinterface.config.BankConfig;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.exception.ValidationException;
+import org.bankinterface.param.QueryParam;
+import org.bankinterface.validator.Validator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExecutionPlanTest {
+    private TestBank bank = new TestBank();
+
+    @Before
+    public void setUp() throws Exception {
+        bank.init();
+    }
+
+    @Test
+    public void testCompileMatchesConfig() throws Exception {
+        BankConfig config = bank.getBankConfig(null);
+        String type = config.getConfigType(ServiceType.QUERY, false);
+        ExecutionPlan plan = bank.getExecutionPlan(null, ServiceType.QUERY, false);
+
+        assertEquals(type, plan.getType());
+        assertEquals(config.getDefaultValue(type), plan.getDefaultValue());
+        assertArrayEquals(config.getSignedField(type), plan.getSignedField());
+        assertEquals(config.getJoinStyle(type), plan.getJoinStyle());
+        assertEquals("sign", plan.getSignatureKey());
+        assertEquals(TestBank.SIGNER, plan.getSigner().getName());
+
+        Map<String, String> mapping = config.getMapping(type);
+        assertEquals(config.getValidator(type).size(), plan.getValidatorSlots().length);
+        for (FieldSlot slot : plan.getValidatorSlots()) {
+            assertEquals(mapping.get(slot.getKey()), slot.getMapping());
+        }
+        assertEquals(config.getConverter(type).size(), plan.getConverterSlots().length);
+        for (FieldSlot slot : plan.getConverterSlots()) {
+            assertEquals(mapping.get(slot.getKey()), slot.getMapping());
+            assertEquals(config.getDefaultValue(type).get(slot.getKey()), slot.getDefaultValue());
+            assertEquals(config.getTemplate(type).get(slot.getKey()), slot.getTemplate());
+        }
+    }
+
+    @Test
+    public void testSlotsReadAndConvert() throws Exception {
+        QueryParam param = QueryParam.payQueryParam();
+        param.setOrderNo("42");
+        param.getConfig().put("merchantNo", "M1");
+        Map<String, Object> converted = new HashMap<String, Object>();
+        for (FieldSlot slot : bank.getExecutionPlan(null, ServiceType.QUERY, false).getConverterSlots()) {
+            converted.put(slot.getKey(), slot.convert(slot.getValue(param)));
+        }
+        assertEquals("Q42", converted.get("order_no"));
+        assertEquals("M1", converted.get("merchant_no"));
+    }
+
+    @Test
+    public void testResultPlanHasVerifierOnly() throws Exception {
+        ExecutionPlan plan = bank.getExecutionPlan(null, ServiceType.QUERY, true);
+        assertEquals(TestBank.SIGNER, plan.getVerifier().getName());
+        try {
+            plan.getSigner();
+            fail();
+        } catch (SignVerifyException e) {
+            assertSame(SignVerifyException.UNSUPPORTED, e);
+        }
+    }
+
+    @Test
+    public void testPlanCachedUntilRegistryChanges() throws Exception {
+        ExecutionPlan plan = bank.getExecutionPlan(null, ServiceType.QUERY, false);
+        assertSame(plan, bank.getExecutionPlan(null, ServiceType.QUERY, false));
+        assertNotSame(plan, bank.getExecutionPlan(null, ServiceType.QUERY, true));
+
+        bank.registerValidator(new Validator() {
+            public String getName() {
+                return BankConfig.VALIDATOR_NOT_NULL;
+            }
+
+            public void validate(String key, Object value, Object... reference) throws ValidationException {
+                throw new ValidationException("replaced");
+            }
+        });
+        ExecutionPlan recompiled = bank.getExecutionPlan(null, ServiceType.QUERY, false);
+        assertNotSame(plan, recompiled);
+        try {
+            recompiled.getValidatorSlots()[0].validate("x");
+            fail();
+        } catch (ValidationException e) {
+            assertEquals("replaced", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnregisteredRuleFailsWhenUsed() throws Exception {
+        FieldSlot slot = new FieldSlot("k", "orderNo", null, null, null, null);
+        try {
+            slot.validate("x");
+            fail();
+        } catch (ValidationException e) {
+            assertSame(ValidationException.UNSUPPORTED, e);
+        }
+    }
+}
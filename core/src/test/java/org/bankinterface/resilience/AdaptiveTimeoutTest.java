@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AdaptiveTimeoutTest {
+
+    @Test
+    public void testCeilingBeforeMinimumSamples() {
+        AdaptiveTimeout timeout = policy().newAdaptiveTimeout();
+        assertEquals(3000, timeout.getReadTimeout());
+        record(timeout, 9, 100);
+        assertEquals(3000, timeout.getReadTimeout());
+        timeout.record(100, false, 3000);
+        assertEquals(150, timeout.getReadTimeout());
+    }
+
+    @Test
+    public void testFloor() {
+        AdaptiveTimeout timeout = policy().newAdaptiveTimeout();
+        record(timeout, 10, 10);
+        assertEquals(100, timeout.getReadTimeout());
+    }
+
+    @Test
+    public void testCeiling() {
+        AdaptiveTimeout timeout = policy().newAdaptiveTimeout();
+        record(timeout, 10, 5000);
+        assertEquals(3000, timeout.getReadTimeout());
+    }
+
+    @Test
+    public void testPercentileOfRecentCalls() {
+        AdaptiveTimeout timeout = policy().newAdaptiveTimeout();
+        record(timeout, 19, 200);
+        timeout.record(1000, false, 3000);
+        // p90仍为200
+        assertEquals(300, timeout.getReadTimeout());
+        record(timeout, 2, 1000);
+        assertEquals(1500, timeout.getReadTimeout());
+        // 窗口满后最早的样本被替换
+        record(timeout, 20, 400);
+        assertEquals(600, timeout.getReadTimeout());
+    }
+
+    @Test
+    public void testFailuresBeforeTimeoutNotRecorded() {
+        AdaptiveTimeout timeout = policy().newAdaptiveTimeout();
+        for (int i = 0; i < 10; i++) {
+            timeout.record(5, true, 3000);
+        }
+        assertEquals(3000, timeout.getReadTimeout());
+        // 超时失败按已用时间记录
+        for (int i = 0; i < 10; i++) {
+            timeout.record(1000, true, 1000);
+        }
+        assertEquals(1500, timeout.getReadTimeout());
+    }
+
+    @Test
+    public void testCeilingNotBelowFloor() {
+        AdaptiveTimeoutPolicy policy = policy();
+        policy.setCeilingMillis(50);
+        AdaptiveTimeout timeout = policy.newAdaptiveTimeout();
+        assertEquals(100, timeout.getReadTimeout());
+        record(timeout, 10, 1000);
+        assertEquals(100, timeout.getReadTimeout());
+    }
+
+    private static void record(AdaptiveTimeout timeout, int times, long elapsedMillis) {
+        for (int i = 0; i < times; i++) {
+            timeout.record(elapsedMillis, false, 3000);
+        }
+    }
+
+    private static AdaptiveTimeoutPolicy policy() {
+        AdaptiveTimeoutPolicy policy = new AdaptiveTimeoutPolicy();
+        policy.setPercentile(0.9);
+        policy.setMultiplier(1.5);
+        policy.setFloorMillis(100);
+        policy.setCeilingMillis(3000);
+        policy.setWindowSize(20);
+        policy.setMinimumSamples(10);
+        return policy;
+    }
+}
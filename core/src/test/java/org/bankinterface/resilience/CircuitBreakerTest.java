@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import static org.junit.Assert.*;
+
+import org.bankinterface.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = policy(50).newCircuitBreaker("test");
+        breaker.onResult(true, 1);
+        breaker.onResult(true, 1);
+        breaker.onResult(true, 1);
+        // 未达到minimumCalls
+        assertEquals(State.CLOSED, breaker.getState());
+        breaker.onResult(false, 1);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testStaysClosedBelowFailureRate() {
+        CircuitBreaker breaker = policy(50).newCircuitBreaker("test");
+        for (int i = 0; i < 20; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onResult(i % 4 == 0, 1);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testWindowEvictsOldOutcomes() {
+        CircuitBreaker breaker = policy(50).newCircuitBreaker("test");
+        breaker.onResult(true, 1);
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(false, 1);
+        }
+        // 最早的失败已移出窗口,否则此时已达到2失败/4调用
+        breaker.onResult(true, 1);
+        assertEquals(State.CLOSED, breaker.getState());
+        breaker.onResult(true, 1);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = policy(50).newCircuitBreaker("test");
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(false, 100);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        breaker.onResult(false, 100);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOpenRejectsCalls() {
+        CircuitBreaker breaker = open(policy(60000));
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.getRejectedCount());
+        assertEquals(State.OPEN, breaker.getState());
+        // 熔断前发出的调用结果被忽略
+        breaker.onResult(false, 1);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbesClose() throws Exception {
+        CircuitBreaker breaker = open(policy(50));
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+
+        breaker.onResult(false, 1);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.onResult(false, 1);
+        assertEquals(State.CLOSED, breaker.getState());
+
+        // 关闭后窗口重新统计
+        breaker.onResult(true, 1);
+        breaker.onResult(true, 1);
+        breaker.onResult(true, 1);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopens() throws Exception {
+        CircuitBreaker breaker = open(policy(50));
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(true, 1);
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpenSlowProbeReopens() throws Exception {
+        CircuitBreaker breaker = open(policy(50));
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(false, 100);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    private static CircuitBreaker open(CircuitBreakerPolicy policy) {
+        CircuitBreaker breaker = policy.newCircuitBreaker("test");
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(true, 1);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static CircuitBreakerPolicy policy(long openMillis) {
+        CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+        policy.setWindowSize(4);
+        policy.setMinimumCalls(4);
+        policy.setFailureRateThreshold(0.5);
+        policy.setSlowCallMillis(50);
+        policy.setSlowCallRateThreshold(1);
+        policy.setOpenMillis(openMillis);
+        policy.setHalfOpenCalls(2);
+        return policy;
+    }
+}
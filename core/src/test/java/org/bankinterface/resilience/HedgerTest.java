@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HedgerTest {
+
+    @Test
+    public void testNoDelayBeforeMinimumSamples() {
+        Hedger hedger = policy(1).newHedger();
+        assertEquals(-1, hedger.getDelayMillis());
+        hedger.onResponse(100, false);
+        hedger.onResponse(100, false);
+        assertEquals(-1, hedger.getDelayMillis());
+        hedger.onResponse(100, false);
+        assertEquals(100, hedger.getDelayMillis());
+    }
+
+    @Test
+    public void testDelayNotBelowMinimum() {
+        Hedger hedger = policy(1).newHedger();
+        for (int i = 0; i < 3; i++) {
+            hedger.onResponse(5, false);
+        }
+        assertEquals(20, hedger.getDelayMillis());
+    }
+
+    @Test
+    public void testTokensAccumulatePerRequest() {
+        Hedger hedger = policy(0.25).newHedger();
+        assertFalse(hedger.tryHedge());
+        for (int i = 0; i < 3; i++) {
+            hedger.onRequest();
+            assertFalse(hedger.tryHedge());
+        }
+        hedger.onRequest();
+        assertTrue(hedger.tryHedge());
+        assertFalse(hedger.tryHedge());
+        assertEquals(4, hedger.getRequestCount());
+        assertEquals(1, hedger.getHedgeCount());
+    }
+
+    @Test
+    public void testTokensCapped() {
+        Hedger hedger = policy(1).newHedger();
+        for (int i = 0; i < 100; i++) {
+            hedger.onRequest();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(hedger.tryHedge());
+        }
+        assertFalse(hedger.tryHedge());
+        assertEquals(10, hedger.getHedgeCount());
+    }
+
+    @Test
+    public void testZeroRatioNeverHedges() {
+        Hedger hedger = policy(0).newHedger();
+        for (int i = 0; i < 100; i++) {
+            hedger.onRequest();
+        }
+        assertFalse(hedger.tryHedge());
+    }
+
+    @Test
+    public void testHedgeWins() {
+        Hedger hedger = policy(1).newHedger();
+        hedger.onResponse(100, true);
+        hedger.onResponse(100, false);
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    private static HedgePolicy policy(double maxHedgeRatio) {
+        HedgePolicy policy = new HedgePolicy();
+        policy.setPercentile(0.95);
+        policy.setMinimumDelayMillis(20);
+        policy.setMaxHedgeRatio(maxHedgeRatio);
+        policy.setWindowSize(200);
+        policy.setMinimumSamples(3);
+        return policy;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void testRetriesLimitedByRatio() {
+        RetryBudget budget = new RetryBudget(0.25);
+        assertFalse(budget.tryRetry());
+        for (int i = 0; i < 4; i++) {
+            budget.onRequest();
+        }
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+        assertEquals(4, budget.getRequestCount());
+        assertEquals(1, budget.getRetryCount());
+        assertEquals(2, budget.getExhaustedCount());
+    }
+
+    @Test
+    public void testTokensCapped() {
+        RetryBudget budget = new RetryBudget(1);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryRetry());
+        }
+        assertFalse(budget.tryRetry());
+        assertEquals(10, budget.getRetryCount());
+        assertEquals(1, budget.getExhaustedCount());
+    }
+
+    @Test
+    public void testZeroRatioNeverRetries() {
+        RetryBudget budget = new RetryBudget(0);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRatioOutOfRange() {
+        new RetryBudget(1.5);
+    }
+}
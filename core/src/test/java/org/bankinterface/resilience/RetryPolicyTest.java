@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.resilience;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testBackoffWithinExponentialCap() {
+        RetryPolicy policy = new RetryPolicy();
+        for (int retries = 0; retries < 70; retries++) {
+            long cap = retries < 5 ? 100L << retries : 2000;
+            long max = 0;
+            for (int i = 0; i < 200; i++) {
+                long backoff = policy.getBackoffMillis(retries);
+                assertTrue(backoff >= 0 && backoff <= cap);
+                max = Math.max(max, backoff);
+            }
+            // 全抖动覆盖整个区间
+            assertTrue(max > cap / 2);
+        }
+    }
+
+    @Test
+    public void testLargeBaseDelayDoesNotOverflow() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBaseDelayMillis(Long.MAX_VALUE / 3);
+        policy.setMaxDelayMillis(5000);
+        for (int retries = 0; retries < 70; retries++) {
+            long max = 0;
+            for (int i = 0; i < 200; i++) {
+                long backoff = policy.getBackoffMillis(retries);
+                assertTrue(retries + ": " + backoff, backoff >= 0 && backoff <= 5000);
+                max = Math.max(max, backoff);
+            }
+            // 溢出时不能退化为不等待
+            assertTrue(retries + ": " + max, max > 2500);
+        }
+    }
+
+    @Test
+    public void testZeroDelays() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBaseDelayMillis(0);
+        for (int retries = 0; retries < 70; retries++) {
+            assertEquals(0, policy.getBackoffMillis(retries));
+        }
+        policy.setBaseDelayMillis(100);
+        policy.setMaxDelayMillis(0);
+        for (int retries = 0; retries < 70; retries++) {
+            assertEquals(0, policy.getBackoffMillis(retries));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxAttemptsMustBePositive() {
+        new RetryPolicy().setMaxAttempts(0);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.bankinterface.param.QueryParam;
+import org.junit.Test;
+
+public class PropertyAccessorFactoryTest {
+    private static final String   DEFAULT  = "default";
+    private static final String[] MAPPINGS = { "orderNo", "orderDate", "transactionType", "serviceType",
+            "config.merchantNo", "config.missing", "config.missing.value", "missing", "custom.value",
+            "orderDate.time", "items[0].orderNo", "items[5].orderNo", "orderNo|config.merchantNo",
+            "orderNo|orderDate", "orderNo|missing", "orderNo|orderDate.time", "orderNo|config.missing",
+            "orderNo|config.missing.value", "orderNo|items[0].orderNo", "|orderNo||transactionType|" };
+
+    @Test
+    public void testSameAsBeanUtils() {
+        QueryParam param = QueryParam.batchPayQueryParam();
+        param.setOrderNo("1");
+        param.getConfig().put("merchantNo", "M1");
+        QueryParam item = QueryParam.payQueryParam();
+        item.setOrderNo("2");
+        param.setItems(Arrays.asList(item));
+        assertSameAsBeanUtils(param);
+
+        QueryParam empty = QueryParam.payQueryParam();
+        empty.setOrderDate(new Date(0));
+        assertSameAsBeanUtils(empty);
+    }
+
+    @Test
+    public void testCompositeFallsBackToDefault() throws Exception {
+        QueryParam param = QueryParam.payQueryParam();
+        param.setOrderNo("1");
+        // 属性存在但值为null时保留null元素
+        assertEquals(Arrays.asList("1", null), value(param, "orderNo|orderDate"));
+        // 属性不存在或中间值为null时使用默认值
+        assertEquals(DEFAULT, value(param, "orderNo|missing"));
+        assertEquals(DEFAULT, value(param, "orderNo|orderDate.time"));
+        assertNull(PropertyAccessorFactory.getAccessor(QueryParam.class, "orderNo|missing").get(param));
+    }
+
+    @Test
+    public void testAccessorCached() {
+        assertSame(PropertyAccessorFactory.getAccessor(QueryParam.class, "config.merchantNo"),
+                PropertyAccessorFactory.getAccessor(QueryParam.class, "config.merchantNo"));
+    }
+
+    private static void assertSameAsBeanUtils(Object bean) {
+        for (String mapping : MAPPINGS) {
+            assertEquals(mapping, baseline(bean, mapping), value(bean, mapping));
+        }
+    }
+
+    private static Object value(Object bean, String mapping) {
+        Object result = null;
+        try {
+            result = PropertyAccessorFactory.getAccessor(bean.getClass(), mapping).get(bean);
+        } catch (Exception e) {
+        }
+        return result == null ? DEFAULT : result;
+    }
+
+    // 改用读取器前的取值方式
+    private static Object baseline(Object bean, String propertys) {
+        Object result = null;
+        try {
+            if (propertys.contains("|")) {
+                List<Object> list = new LinkedList<Object>();
+                for (String property : propertys.split("\\|")) {
+                    if (Utils.isEmpty(property)) {
+                        continue;
+                    }
+                    list.add(PropertyUtils.getProperty(bean, property));
+                }
+                result = list;
+            } else {
+                result = PropertyUtils.getProperty(bean, propertys);
+            }
+        } catch (Exception e) {
+        }
+        return result == null ? DEFAULT : result;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import org.bankinterface.adaptor.Stage;
+import org.bankinterface.adaptor.StageTimings;
+
+/**
+ * 同一指标键下的总耗时及各阶段耗时
+ * 
+ */
+public class BankMetrics {
+    private static final Stage[]     STAGES = Stage.values();
+
+    private final MetricKey          key;
+    private final LatencyHistogram   total  = new LatencyHistogram();
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGES.length];
+
+    BankMetrics(MetricKey key) {
+        this.key = key;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(StageTimings timings) {
+        total.record(timings.getTotalTime());
+        for (int i = 0; i < STAGES.length; i++) {
+            // 未执行到的阶段为-1,直方图忽略
+            stages[i].record(timings.getElapsed(STAGES[i]));
+        }
+    }
+
+    public MetricKey getKey() {
+        return key;
+    }
+
+    /**
+     * 处理次数
+     * 
+     * @return
+     */
+    public long getCount() {
+        return total.getCount();
+    }
+
+    /**
+     * 总耗时快照
+     * 
+     * @return
+     */
+    public HistogramSnapshot getTotal() {
+        return total.snapshot();
+    }
+
+    /**
+     * 指定阶段耗时快照
+     * 
+     * @param stage
+     * @return
+     */
+    public HistogramSnapshot getStage(Stage stage) {
+        return stages[stage.ordinal()].snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return key + " " + total.snapshot();
+    }
+}
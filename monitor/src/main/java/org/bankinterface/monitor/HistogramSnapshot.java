@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+/**
+ * 耗时直方图快照,不可变
+ * 
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long   count;
+    private final long   sum;
+    private final long   max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * 记录次数
+     * 
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 平均耗时(纳秒)
+     * 
+     * @return
+     */
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * 最大耗时(纳秒)
+     * 
+     * @return
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * 指定分位的耗时(纳秒)
+     * 
+     * @param quantile 0到1之间,如0.99
+     * @return 无记录时返回0
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.valueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getP50() {
+        return getValueAtQuantile(0.5);
+    }
+
+    public long getP99() {
+        return getValueAtQuantile(0.99);
+    }
+
+    public long getP999() {
+        return getValueAtQuantile(0.999);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + getMean() + " p50=" + getP50() + " p99=" + getP99() + " p999="
+                + getP999() + " max=" + max;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数分桶的耗时直方图(纳秒),无锁记录.
+ * 
+ * <pre>
+ * 小于16的值各占一个桶,其余值按最高位分段,每段再等分16个子桶,相对误差不超过1/16.
+ * 超过2^40纳秒(约18分钟)的值计入最后一个桶.
+ * </pre>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS    = 4;
+    private static final int SUB_COUNT   = 1 << SUB_BITS;
+    private static final int MAX_EXP     = 40;
+    static final int         BUCKETS     = (MAX_EXP - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder       count   = new LongAdder();
+    private final LongAdder       sum     = new LongAdder();
+    private final AtomicLong      max     = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * 
+     * @param nanos 小于0时忽略
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        buckets.incrementAndGet(indexOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 记录次数
+     * 
+     * @return
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 当前快照,记录与快照并发时各桶计数可能来自略有不同的时刻
+     * 
+     * @return
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return new HistogramSnapshot(counts, total, sum.sum(), max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 桶的代表值(桶区间中点)
+     * 
+     * @param index
+     * @return
+     */
+    static long valueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long width = 1L << (exp - SUB_BITS);
+        return ((long) (SUB_COUNT + sub) << (exp - SUB_BITS)) + width / 2;
+    }
+}
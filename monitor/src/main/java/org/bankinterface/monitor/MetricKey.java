@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import org.bankinterface.enums.ServiceType;
+
+/**
+ * 指标键:支付机构,服务类型,结果状态
+ * 
+ */
+public final class MetricKey {
+    private final String      bankName;
+    private final ServiceType serviceType;
+    private final String      status;
+    private final int         hash;
+
+    public MetricKey(String bankName, ServiceType serviceType, String status) {
+        this.bankName = bankName;
+        this.serviceType = serviceType;
+        this.status = status;
+        int h = bankName == null ? 0 : bankName.hashCode();
+        h = 31 * h + (serviceType == null ? 0 : serviceType.hashCode());
+        this.hash = 31 * h + (status == null ? 0 : status.hashCode());
+    }
+
+    public String getBankName() {
+        return bankName;
+    }
+
+    public ServiceType getServiceType() {
+        return serviceType;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MetricKey)) {
+            return false;
+        }
+        MetricKey other = (MetricKey) obj;
+        return hash == other.hash && eq(bankName, other.bankName) && serviceType == other.serviceType
+                && eq(status, other.status);
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return bankName + " " + serviceType + " " + status;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bankinterface.adaptor.BankAdaptor;
+import org.bankinterface.adaptor.BankAdaptorHandler;
+import org.bankinterface.adaptor.DefaultBankAdaptorHandler;
+import org.bankinterface.adaptor.StageListener;
+import org.bankinterface.adaptor.StageTimings;
+import org.bankinterface.enums.ServiceType;
+
+/**
+ * 指标注册表,按支付机构,服务类型及结果状态汇总处理耗时.
+ * 
+ * <pre>
+ * MetricsRegistry registry = new MetricsRegistry();
+ * registry.register(bank);
+ * ...
+ * registry.get(Mock.class.getName(), ServiceType.QUERY, Result.SUCCESS).getTotal().getP99();
+ * </pre>
+ */
+public class MetricsRegistry implements StageListener {
+    private final ConcurrentMap<MetricKey, BankMetrics> metrics = new ConcurrentHashMap<MetricKey, BankMetrics>();
+
+    /**
+     * 监听指定支付机构的处理耗时
+     * 
+     * @param adaptor
+     */
+    public void register(BankAdaptor adaptor) {
+        BankAdaptorHandler handler = adaptor.getHandler();
+        if (!(handler instanceof DefaultBankAdaptorHandler)) {
+            throw new IllegalArgumentException("Unsupported handler: " + handler);
+        }
+        ((DefaultBankAdaptorHandler) handler).setStageListener(this);
+    }
+
+    @Override
+    public void onCompleted(StageTimings timings) {
+        MetricKey key = new MetricKey(timings.getBankName(), timings.getServiceType(), timings.getStatus());
+        BankMetrics bankMetrics = metrics.get(key);
+        if (bankMetrics == null) {
+            bankMetrics = new BankMetrics(key);
+            BankMetrics existing = metrics.putIfAbsent(key, bankMetrics);
+            if (existing != null) {
+                bankMetrics = existing;
+            }
+        }
+        bankMetrics.record(timings);
+    }
+
+    /**
+     * 获得指定键的指标
+     * 
+     * @param bankName 支付机构类名
+     * @param serviceType
+     * @param status 结果状态
+     * @return 尚无记录时返回null
+     */
+    public BankMetrics get(String bankName, ServiceType serviceType, String status) {
+        return metrics.get(new MetricKey(bankName, serviceType, status));
+    }
+
+    /**
+     * 获得全部指标
+     * 
+     * @return
+     */
+    public List<BankMetrics> getAll() {
+        return new ArrayList<BankMetrics>(metrics.values());
+    }
+
+    /**
+     * 清空全部指标
+     */
+    public void clear() {
+        metrics.clear();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.valueOf((int) value));
+        }
+        int last = -1;
+        for (long value = 16; value < 1L << 20; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index >= last);
+            last = index;
+            long represented = LatencyHistogram.valueOf(index);
+            // 相对误差不超过1/16
+            assertTrue(value + " -> " + represented, Math.abs(represented - value) * 16 <= value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+        assertTrue(LatencyHistogram.indexOf(1L << 40) < LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getP99());
+
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getMean());
+        assertEquals(1000000, snapshot.getMax());
+        assertWithin(500000, snapshot.getP50());
+        assertWithin(990000, snapshot.getP99());
+        assertTrue(snapshot.getP999() <= snapshot.getMax());
+        assertTrue(snapshot.getValueAtQuantile(0) > 0);
+        assertWithin(snapshot.getMax(), snapshot.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getCount());
+        assertEquals(40000, histogram.snapshot().getCount());
+        assertEquals(9999, histogram.snapshot().getMax());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " ~ " + actual, Math.abs(actual - expected) * 16 <= expected);
+    }
+}
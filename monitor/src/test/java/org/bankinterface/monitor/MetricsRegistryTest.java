@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.monitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.bankinterface.adaptor.Stage;
+import org.bankinterface.bank.BaseBank;
+import org.bankinterface.enums.ServiceType;
+import org.bankinterface.exception.ConfigException;
+import org.bankinterface.exception.SignVerifyException;
+import org.bankinterface.param.Notification;
+import org.bankinterface.result.AsyncPayResult;
+import org.bankinterface.result.Result;
+import org.bankinterface.verifier.Verifier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+    private MonitorBank     bank     = new MonitorBank();
+    private MetricsRegistry registry = new MetricsRegistry();
+
+    @Before
+    public void setUp() throws Exception {
+        bank.init();
+        registry.register(bank);
+    }
+
+    @Test
+    public void testRecordsByStatus() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Result.SUCCESS, bank.resolveAsyncPayResult(notification("42")).getStatus());
+        }
+        AsyncPayResult failed = bank.resolveAsyncPayResult(notification(null));
+        assertFalse(Result.SUCCESS.equals(failed.getStatus()));
+
+        String bankName = MonitorBank.class.getName();
+        BankMetrics success = registry.get(bankName, ServiceType.ASYNC_PAY_NOTIFICATION, Result.SUCCESS);
+        assertEquals(3, success.getCount());
+        assertEquals(3, success.getTotal().getCount());
+        assertEquals(3, success.getStage(Stage.VERIFY).getCount());
+        assertEquals(3, success.getStage(Stage.BUILD_RESULT).getCount());
+        // 通知处理不经过发送阶段
+        assertEquals(0, success.getStage(Stage.SEND).getCount());
+
+        assertEquals(1, registry.get(bankName, ServiceType.ASYNC_PAY_NOTIFICATION, failed.getStatus()).getCount());
+        assertNull(registry.get(bankName, ServiceType.QUERY, Result.SUCCESS));
+        assertEquals(2, registry.getAll().size());
+
+        registry.clear();
+        assertTrue(registry.getAll().isEmpty());
+    }
+
+    @Test
+    public void testMetricKey() {
+        MetricKey key = new MetricKey("bank", ServiceType.QUERY, Result.SUCCESS);
+        assertEquals(key, new MetricKey("bank", ServiceType.QUERY, Result.SUCCESS));
+        assertEquals(key.hashCode(), new MetricKey("bank", ServiceType.QUERY, Result.SUCCESS).hashCode());
+        assertFalse(key.equals(new MetricKey("bank", ServiceType.REFUND, Result.SUCCESS)));
+        assertEquals(new MetricKey(null, null, null), new MetricKey(null, null, null));
+    }
+
+    private static Notification notification(String orderNo) {
+        Notification notification = new Notification(null);
+        notification.setServiceType(ServiceType.ASYNC_PAY_NOTIFICATION);
+        notification.setContent(orderNo == null ? "" : orderNo);
+        return notification;
+    }
+
+    /**
+     * 测试用支付机构,通知内容即订单号
+     */
+    public static class MonitorBank extends BaseBank {
+
+        @Override
+        public void init() throws ConfigException {
+            super.init();
+            registerVerifier(new Verifier() {
+                public String getName() {
+                    return "";
+                }
+
+                public Map<String, String> verify(String[] signedField, String joinStyle, String signatureKey,
+                        Notification notification) throws SignVerifyException {
+                    String content = notification.getContent();
+                    return content.isEmpty() ? Collections.<String, String> emptyMap()
+                            : Collections.singletonMap("order_no", content);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.http;
+
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLContext;
+
+import org.bankinterface.util.HttpEngine;
+import org.bankinterface.util.HttpRequest;
+import org.bankinterface.util.HttpResponse;
+import org.bankinterface.util.HttpRoute;
+import org.bankinterface.util.SSLSessionCache;
+import org.bankinterface.util.SSLUtil;
+
+/**
+ * {@link HttpEngine} on top of java.net.http. Requests are sent with sendAsync, all connections of a client are
+ * served by its selector thread, so in-flight requests do not hold a thread each.
+ * <p>
+ * One java.net.http client, with its own connection pool, is kept per TLS setting (client certificate alias, trust
+ * mode, host verification level and, for hosts configured in {@link SSLSessionCache}, the host) and connect timeout.
+ * The SSLContext comes from {@link SSLUtil#getSSLContext(String, boolean, String, int)}; a client is replaced once
+ * the cert or trust stores change. The read timeout of a request bounds the wait for the response headers. Redirects
+ * are not followed.
+ * <p>
+ * Requests asking for {@link HttpRequest#HTTP_2} go through a separate client that offers h2 by ALPN (or h2c upgrade
+ * on plain http). Concurrent requests to the same gateway are then multiplexed as streams over one connection per
+ * host; gateways without HTTP/2 fall back to HTTP/1.1 on the same client.
+ */
+public class JdkHttpEngine implements HttpEngine {
+    // managed by java.net.http itself, setting them is rejected
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<String>(Arrays.asList("connection",
+            "content-length", "expect", "host", "upgrade"));
+
+    private final Executor                             executor;
+    private final ConcurrentMap<ClientKey, HttpClient> clients = new ConcurrentHashMap<ClientKey, HttpClient>();
+
+    public JdkHttpEngine() {
+        this(null);
+    }
+
+    /**
+     * @param executor runs the completion of responses, null for the java.net.http default
+     */
+    public JdkHttpEngine(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> execute(HttpRequest request) {
+        HttpClient client;
+        java.net.http.HttpRequest jdkRequest;
+        try {
+            client = getClient(request);
+            jdkRequest = toJdkRequest(request);
+        } catch (Exception e) {
+            CompletableFuture<HttpResponse> failed = new CompletableFuture<HttpResponse>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        final CompletableFuture<java.net.http.HttpResponse<byte[]>> sent = client.sendAsync(jdkRequest,
+                BodyHandlers.ofByteArray());
+        final CompletableFuture<HttpResponse> response = sent.thenApply(JdkHttpEngine::toResponse);
+        // dependent stages do not cancel their source, pass it on so java.net.http aborts the exchange
+        response.whenComplete((r, e) -> {
+            if (response.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    private HttpClient getClient(HttpRequest request) throws Exception {
+        HttpRoute route = request.getRoute();
+        SSLContext context = null;
+        ClientKey key;
+        if (route.isSecure()) {
+            context = SSLUtil.getSSLContext(route.getClientCertAlias(), route.isTrustAny(), route.getHost(), route
+                    .getHostVerification());
+            String sessionHost = SSLSessionCache.isConfigured(route.getHost()) ? route.getHost().toLowerCase() : null;
+            key = new ClientKey(route.getClientCertAlias(), route.isTrustAny(), sessionHost, route
+                    .getHostVerification(), request.getConnectTimeout(), request.isHttp2());
+        } else {
+            key = new ClientKey(null, false, null, -1, request.getConnectTimeout(), request.isHttp2());
+        }
+
+        HttpClient client = clients.get(key);
+        if (client == null || (context != null && client.sslContext() != context)) {
+            client = newClient(context, request.getConnectTimeout(), request.isHttp2());
+            clients.put(key, client);
+        }
+        return client;
+    }
+
+    private HttpClient newClient(SSLContext context, int connectTimeout, boolean http2) {
+        HttpClient.Builder builder = HttpClient.newBuilder().version(http2 ? Version.HTTP_2 : Version.HTTP_1_1)
+                .followRedirects(Redirect.NEVER);
+        if (context != null) {
+            builder.sslContext(context);
+        }
+        if (connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private static java.net.http.HttpRequest toJdkRequest(HttpRequest request) throws URISyntaxException {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(request.getUrl().toURI());
+        if (request.getReadTimeout() > 0) {
+            builder.timeout(Duration.ofMillis(request.getReadTimeout()));
+        }
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        byte[] body = request.getBody();
+        builder.method(request.getMethod(), body == null ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                : java.net.http.HttpRequest.BodyPublishers.ofByteArray(body));
+        return builder.build();
+    }
+
+    private static HttpResponse toResponse(java.net.http.HttpResponse<byte[]> response) {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            headers.put(header.getKey().toLowerCase(), header.getValue());
+        }
+        // java.net.http does not expose the reason phrase
+        return new HttpResponse(response.statusCode(), "", headers, response.body());
+    }
+
+    static final class ClientKey {
+        private final String  alias;
+        private final boolean trustAny;
+        private final String  host;
+        private final int     level;
+        private final int     connectTimeout;
+        private final boolean http2;
+
+        ClientKey(String alias, boolean trustAny, String host, int level, int connectTimeout, boolean http2) {
+            this.alias = alias;
+            this.trustAny = trustAny;
+            this.host = host;
+            this.level = level;
+            this.connectTimeout = connectTimeout;
+            this.http2 = http2;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (alias == null ? 0 : alias.hashCode()) * 31 + (trustAny ? 1 : 0);
+            hash = hash * 31 + (host == null ? 0 : host.hashCode());
+            hash = hash * 31 + level;
+            hash = hash * 31 + connectTimeout;
+            return hash * 31 + (http2 ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) obj;
+            return trustAny == other.trustAny && level == other.level && connectTimeout == other.connectTimeout
+                    && http2 == other.http2
+                    && (alias == null ? other.alias == null : alias.equals(other.alias))
+                    && (host == null ? other.host == null : host.equals(other.host));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.http;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bankinterface.util.HttpClient;
+import org.bankinterface.util.HttpRequest;
+import org.bankinterface.util.KeyStoreUtil;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the engine against a local Jetty server speaking h2 over TLS with client authentication.
+ */
+public class JdkHttpEngineTest {
+    private static final String PASSWORD     = "changeit";
+    private static final String CLIENT_ALIAS = "client";
+
+    private static File         directory;
+    private static Server       server;
+    private static String       url;
+    private static JdkHttpEngine engine;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        directory = File.createTempFile("bankinterface-h2", "");
+        directory.delete();
+        directory.mkdirs();
+        File serverStore = new File(directory, "server.jks");
+        File clientStore = new File(directory, "client.jks");
+        File trustStore = new File(directory, "trust.jks");
+        File serverCert = new File(directory, "server.cer");
+        File clientCert = new File(directory, "client.cer");
+        keytool("-genkeypair", "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1", "-dname",
+                "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-storetype", "jks", "-keystore",
+                serverStore.getPath(), "-storepass", PASSWORD, "-keypass", PASSWORD);
+        keytool("-genkeypair", "-alias", CLIENT_ALIAS, "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=bank client", "-storetype", "jks", "-keystore", clientStore.getPath(), "-storepass",
+                PASSWORD, "-keypass", PASSWORD);
+        keytool("-exportcert", "-alias", "server", "-keystore", serverStore.getPath(), "-storepass", PASSWORD,
+                "-file", serverCert.getPath());
+        keytool("-exportcert", "-alias", CLIENT_ALIAS, "-keystore", clientStore.getPath(), "-storepass", PASSWORD,
+                "-file", clientCert.getPath());
+        keytool("-importcert", "-noprompt", "-alias", "server", "-file", serverCert.getPath(), "-storetype", "jks",
+                "-keystore", trustStore.getPath(), "-storepass", PASSWORD);
+        keytool("-importcert", "-noprompt", "-alias", CLIENT_ALIAS, "-file", clientCert.getPath(), "-storetype",
+                "jks", "-keystore", trustStore.getPath(), "-storepass", PASSWORD);
+
+        server = new Server();
+        SslContextFactory.Server ssl = new SslContextFactory.Server();
+        ssl.setKeyStorePath(serverStore.getPath());
+        ssl.setKeyStorePassword(PASSWORD);
+        ssl.setTrustStorePath(trustStore.getPath());
+        ssl.setTrustStorePassword(PASSWORD);
+        ssl.setNeedClientAuth(true);
+        ssl.setCipherComparator(HTTP2Cipher.COMPARATOR);
+        HttpConfiguration config = new HttpConfiguration();
+        config.addCustomizer(new SecureRequestCustomizer());
+        ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", "http/1.1");
+        alpn.setDefaultProtocol("http/1.1");
+        ServerConnector connector = new ServerConnector(server, new SslConnectionFactory(ssl, alpn.getProtocol()),
+                alpn, new HTTP2ServerConnectionFactory(config), new HttpConnectionFactory(config));
+        connector.setHost("localhost");
+        server.addConnector(connector);
+        server.setHandler(new EchoHandler());
+        server.start();
+        url = "https://localhost:" + connector.getLocalPort() + "/echo";
+
+        KeyStoreUtil.registerCertStore(clientStore.toURI().toString(), PASSWORD, "jks");
+        KeyStoreUtil.registerTrustStore(trustStore.toURI().toString(), PASSWORD, "jks");
+        engine = new JdkHttpEngine();
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+        if (directory != null) {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testHttp2WithClientCertificate() throws Exception {
+        String[] echo = newClient(HttpRequest.HTTP_2, 0).postAsync().get().split("\\|");
+        assertEquals("HTTP/2.0", echo[0]);
+        assertEquals("CN=bank client", echo[1]);
+    }
+
+    @Test
+    public void testHttp11ByDefault() throws Exception {
+        String[] echo = newClient(null, 0).postAsync().get().split("\\|");
+        assertEquals("HTTP/1.1", echo[0]);
+        assertEquals("CN=bank client", echo[1]);
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneConnection() throws Exception {
+        // the first request opens the connection, the rest are multiplexed on it
+        String first = newClient(HttpRequest.HTTP_2, 0).postAsync().get();
+        List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(newClient(HttpRequest.HTTP_2, 200).postAsync());
+        }
+        Set<String> ports = new HashSet<String>();
+        ports.add(first.split("\\|")[2]);
+        for (CompletableFuture<String> future : futures) {
+            String[] echo = future.get().split("\\|");
+            assertEquals("HTTP/2.0", echo[0]);
+            ports.add(echo[2]);
+        }
+        assertEquals(1, ports.size());
+    }
+
+    private static HttpClient newClient(String version, int delay) {
+        HttpClient client = new HttpClient(url);
+        client.setEngine(engine);
+        client.setHttpVersion(version);
+        client.setClientCertificateAlias(CLIENT_ALIAS);
+        client.setParameter("delay", String.valueOf(delay));
+        return client;
+    }
+
+    private static void keytool(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool");
+        for (String arg : args) {
+            command.add(arg);
+        }
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        InputStream out = process.getInputStream();
+        byte[] buffer = new byte[1024];
+        StringBuilder message = new StringBuilder();
+        int n;
+        while ((n = out.read(buffer)) != -1) {
+            message.append(new String(buffer, 0, n));
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed: " + message);
+        }
+    }
+
+    static class EchoHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            long delay = Long.parseLong(request.getParameter("delay"));
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            X509Certificate[] chain = (X509Certificate[]) request
+                    .getAttribute("javax.servlet.request.X509Certificate");
+            String subject = chain == null ? "" : chain[0].getSubjectX500Principal().getName();
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write(request.getProtocol() + "|" + subject + "|" + request.getRemotePort());
+            baseRequest.setHandled(true);
+        }
+    }
+}
@@ -20,15 +20,18 @@ import java.security.Principal;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509KeyManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * KeyManager used to specify a certificate alias
+ * KeyManager used to specify a certificate alias. Extends X509ExtendedKeyManager so the alias is also honoured by
+ * SSLEngine based clients, JSSE does not ask a plain X509KeyManager for an engine client alias.
  */
-public class AliasKeyManager implements X509KeyManager {
+public class AliasKeyManager extends X509ExtendedKeyManager {
     private static final Logger logger     = LoggerFactory.getLogger(AliasKeyManager.class);
     protected X509KeyManager    keyManager = null;
     protected String            alias      = null;
@@ -59,6 +62,11 @@ public class AliasKeyManager implements X509KeyManager {
         return null;
     }
 
+    @Override
+    public String chooseEngineClientAlias(String[] keyTypes, Principal[] issuers, SSLEngine engine) {
+        return chooseClientAlias(keyTypes, issuers, (Socket) null);
+    }
+
     // these just pass through the keyManager
     public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
         return keyManager.chooseServerAlias(keyType, issuers, socket);
@@ -94,4 +102,12 @@ public class AliasKeyManager implements X509KeyManager {
     public String[] getServerAliases(String keyType, Principal[] issuers) {
         return keyManager.getServerAliases(keyType, issuers);
     }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        if (keyManager instanceof X509ExtendedKeyManager) {
+            return ((X509ExtendedKeyManager) keyManager).chooseEngineServerAlias(keyType, issuers, engine);
+        }
+        return null;
+    }
 }
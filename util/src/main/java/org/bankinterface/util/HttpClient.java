@@ -15,20 +15,26 @@
  */
 package org.bankinterface.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import javax.net.ssl.SSLHandshakeException;
 
 import org.apache.commons.codec.binary.Base64;
 import org.bankinterface.exception.HttpClientException;
@@ -39,27 +45,46 @@ import org.slf4j.LoggerFactory;
  * Send HTTP GET/POST requests.
  */
 public class HttpClient {
-    private static final Logger logger            = LoggerFactory.getLogger(HttpClient.class);
-    private int                 hostVerification  = SSLUtil.HOSTCERT_NORMAL_CHECK;
-    private int                 timeout           = 3000;
-    private boolean             lineFeed          = true;
-    private boolean             trustAny          = false;
-    private boolean             followRedirects   = true;
-    private boolean             keepAlive         = false;
-
-    private String              contentType       = null;
-    private String              streamCharset     = null;
-    private String              url               = null;
-    private String              rawStream         = null;
-    private String              clientCertAlias   = null;
-    private String              basicAuthUsername = null;
-    private String              basicAuthPassword = null;
-
-    private Map<String, String> parameters        = null;
-    private Map<String, String> headers           = null;
-
-    private URL                 requestUrl        = null;
-    private URLConnection       con               = null;
+    /** default connect and read timeout in milliseconds */
+    public static final int       DEFAULT_TIMEOUT   = 3000;
+    private static final Logger   logger            = LoggerFactory.getLogger(HttpClient.class);
+    // bodies up to this size are read into a single exactly sized array
+    private static final int      MAX_PRESIZED_BODY = 1 << 20;
+    // per thread read buffer for bodies of unknown length
+    private static final ThreadLocal<byte[]> READ_BUFFER =
+            new ThreadLocal<byte[]>() {
+                @Override
+                protected byte[] initialValue() {
+                    return new byte[8192];
+                }
+            };
+
+    private int                   hostVerification  = SSLUtil.HOSTCERT_NORMAL_CHECK;
+    private int                   connectTimeout    = DEFAULT_TIMEOUT;
+    private int                   readTimeout       = DEFAULT_TIMEOUT;
+    private boolean               lineFeed          = true;
+    private boolean               trustAny          = false;
+    private boolean               followRedirects   = true;
+    private boolean               keepAlive         = false;
+
+    private String                contentType       = null;
+    private String                streamCharset     = null;
+    private String                url               = null;
+    private String                rawStream         = null;
+    private String                clientCertAlias   = null;
+    private String                basicAuthUsername = null;
+    private String                basicAuthPassword = null;
+    private String                httpVersion       = null;
+
+    private Map<String, String>   parameters        = null;
+    private Map<String, String>   headers           = null;
+
+    private URL                   requestUrl        = null;
+    private URLConnection         con               = null;
+
+    private HttpConnectionManager connectionManager = null;
+    private HttpResponse          response          = null;
+    private HttpEngine            engine            = null;
 
     /** Creates an empty HttpClient object. */
     public HttpClient() {
@@ -101,9 +126,30 @@ public class HttpClient {
         this.headers = headers;
     }
 
-    /** Sets the timeout for waiting for the connection (default sec) */
+    /** Sets both the connect and the read timeout in milliseconds (default 3000) */
     public void setTimeout(int timeout) {
-        this.timeout = timeout;
+        this.connectTimeout = timeout;
+        this.readTimeout = timeout;
+    }
+
+    /** Sets the timeout for establishing the connection in milliseconds (default 3000) */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /** Returns the connect timeout in milliseconds. */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /** Sets the timeout for waiting on response data in milliseconds (default 3000) */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /** Returns the read timeout in milliseconds. */
+    public int getReadTimeout() {
+        return readTimeout;
     }
 
     /** Enables this request to follow redirect 3xx codes (default true) */
@@ -236,6 +282,42 @@ public class HttpClient {
         return this.trustAny;
     }
 
+    /**
+     * Sends requests over persistent connections borrowed from the manager
+     * instead of HttpURLConnection. Redirects are not followed and proxies are not used in this mode.
+     */
+    public void setConnectionManager(HttpConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /** Returns the connection manager, null if not pooled. */
+    public HttpConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    /**
+     * Sets the engine used by the async methods, e.g. a non-blocking one. The blocking methods are not affected.
+     */
+    public void setEngine(HttpEngine engine) {
+        this.engine = engine;
+    }
+
+    public HttpEngine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Sets the protocol version requested from the engine, {@link HttpRequest#HTTP_1_1} (default) or
+     * {@link HttpRequest#HTTP_2}. The blocking methods always speak HTTP/1.1.
+     */
+    public void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
+    public String getHttpVersion() {
+        return this.httpVersion;
+    }
+
     public void setBasicAuthInfo(String basicAuthUsername, String basicAuthPassword) {
         this.basicAuthUsername = basicAuthUsername;
         this.basicAuthPassword = basicAuthPassword;
@@ -267,8 +349,31 @@ public class HttpClient {
         return sendHttpRequestStream("post");
     }
 
+    /** Invoke HTTP request GET and return the raw response body. */
+    public byte[] getBytes() throws HttpClientException {
+        return sendHttpRequestBytes("get");
+    }
+
+    /** Invoke HTTP request POST and return the raw response body. */
+    public byte[] postBytes() throws HttpClientException {
+        return sendHttpRequestBytes("post");
+    }
+
+    /** Invoke HTTP request GET through the engine. */
+    public CompletableFuture<String> getAsync() {
+        return sendHttpRequestAsync("get");
+    }
+
+    /** Invoke HTTP request POST through the engine. */
+    public CompletableFuture<String> postAsync() {
+        return sendHttpRequestAsync("post");
+    }
+
     /** Returns the value of the specified named response header field. */
     public String getResponseHeader(String header) throws HttpClientException {
+        if (response != null) {
+            return response.getHeader(header);
+        }
         if (con == null) {
             throw new HttpClientException("Connection not yet established");
         }
@@ -304,6 +409,9 @@ public class HttpClient {
 
     /** Returns the content-type of the response. */
     public String getResponseContentType() throws HttpClientException {
+        if (response != null) {
+            return response.getContentType();
+        }
         if (con == null) {
             throw new HttpClientException("Connection not yet established");
         }
@@ -312,6 +420,9 @@ public class HttpClient {
 
     /** Returns the content length of the response */
     public int getResponseContentLength() throws HttpClientException {
+        if (response != null) {
+            return response.getContentLength();
+        }
         if (con == null) {
             throw new HttpClientException("Connection not yet established");
         }
@@ -327,6 +438,9 @@ public class HttpClient {
     }
 
     public int getResponseCode() throws HttpClientException {
+        if (response != null) {
+            return response.getStatusCode();
+        }
         if (con == null) {
             throw new HttpClientException("Connection not yet established");
         }
@@ -342,72 +456,306 @@ public class HttpClient {
     }
 
     public String sendHttpRequest(String method) throws HttpClientException {
-        InputStream in = sendHttpRequestStream(method);
-        if (in == null)
+        byte[] body = sendHttpRequestBytes(method);
+        if (body == null)
             return null;
 
-        StringBuilder buf = new StringBuilder();
+        return decode(body, response != null ? response.getContentType() : con.getContentType());
+    }
+
+    /**
+     * Sends the request through the engine set by {@link #setEngine(HttpEngine)} and completes the returned future
+     * with the decoded response text, or exceptionally with an HttpClientException. Without an engine the request is
+     * sent synchronously before returning.
+     */
+    public CompletableFuture<String> sendHttpRequestAsync(String method) {
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        if (engine == null) {
+            try {
+                future.complete(sendHttpRequest(method));
+            } catch (HttpClientException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        final HttpRequest request;
         try {
-            String charset = null;
-            String contentType = con.getContentType();
-            if (contentType == null) {
-                try {
-                    contentType = URLConnection.guessContentTypeFromStream(in);
-                } catch (IOException ioe) {
-                    logger.warn("Problems guessing content type from steam");
+            request = newRequest(method);
+        } catch (HttpClientException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        final CompletableFuture<HttpResponse> exchange = executeAsync(request);
+        // cancelling the returned future aborts the exchange
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((r, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof Exception && !(cause instanceof HttpClientException)) {
+                    cause = new HttpClientException("IO Error processing request", (Exception) cause);
                 }
+                future.completeExceptionally(cause);
+                return;
+            }
+            response = r;
+            try {
+                checkStatus(r);
+                future.complete(decode(r.getBody(), r.getContentType()));
+            } catch (HttpClientException ex) {
+                future.completeExceptionally(ex);
             }
+        });
+        return future;
+    }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Content-Type: " + contentType);
+    // retries once trusting any certificate, as the blocking paths do
+    private CompletableFuture<HttpResponse> executeAsync(final HttpRequest request) {
+        CompletableFuture<HttpResponse> first = engine.execute(request);
+        if (!trustAny) {
+            return first;
+        }
+        return first.handle((r, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(r);
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!isUntrustedCertificate(cause)) {
+                CompletableFuture<HttpResponse> failed = new CompletableFuture<HttpResponse>();
+                failed.completeExceptionally(cause);
+                return failed;
             }
+            logger.warn("Try again override Trust");
+            HttpRoute route = request.getRoute();
+            return engine.execute(request.withRoute(new HttpRoute(route.getScheme(), route.getHost(), route
+                    .getPort(), route.getClientCertAlias(), true, route.getHostVerification())));
+        }).thenCompose(Function.<CompletableFuture<HttpResponse>> identity());
+    }
 
-            if (contentType != null) {
-                contentType = contentType.toUpperCase();
-                int charsetEqualsLoc = contentType.indexOf("=", contentType.indexOf("CHARSET"));
-                int afterSemiColon = contentType.indexOf(";", charsetEqualsLoc);
-                if (charsetEqualsLoc >= 0 && afterSemiColon >= 0) {
-                    charset = contentType.substring(charsetEqualsLoc + 1, afterSemiColon);
-                } else if (charsetEqualsLoc >= 0) {
-                    charset = contentType.substring(charsetEqualsLoc + 1);
-                }
+    private static boolean isUntrustedCertificate(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SSLHandshakeException) {
+                return t.getCause() instanceof CertificateException;
+            }
+        }
+        return false;
+    }
 
-                if (charset != null) {
-                    charset = charset.trim();
-                }
+    private String decode(byte[] body, String contentType) throws HttpClientException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Content-Type: " + contentType);
+        }
+        String text;
+        try {
+            text = new String(body, getCharset(contentType));
+        } catch (IllegalArgumentException e) {
+            throw new HttpClientException("Error processing input stream", e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("[HttpClient] : " + text);
+        }
+        return toLines(text, lineFeed);
+    }
 
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Getting text from HttpClient with charset: " + charset);
+    /**
+     * Sends the request and returns the response body as read from the wire, without decoding or line handling.
+     */
+    public byte[] sendHttpRequestBytes(String method) throws HttpClientException {
+        if (connectionManager != null) {
+            return sendPooledHttpRequest(method).getBody();
+        }
+        InputStream in = sendHttpRequestStream(method);
+        if (in == null)
+            return null;
+
+        try {
+            try {
+                return readBody(in, con.getContentLengthLong());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new HttpClientException("Error processing input stream", e);
+        }
+    }
+
+    private InputStream sendHttpRequestStream(String method) throws HttpClientException {
+        return sendHttpRequestStream(method, false);
+    }
+
+    private HttpResponse sendPooledHttpRequest(String method) throws HttpClientException {
+        HttpRequest request = newRequest(method);
+        try {
+            try {
+                response = execute(request);
+            } catch (SSLHandshakeException e) {
+                if (!trustAny || !(e.getCause() instanceof CertificateException)) {
+                    throw e;
                 }
+                logger.warn("Try again override Trust");
+                HttpRoute route = request.getRoute();
+                response = execute(request.withRoute(new HttpRoute(route.getScheme(), route.getHost(), route
+                        .getPort(), route.getClientCertAlias(), true, route.getHostVerification())));
             }
+        } catch (IOException ioe) {
+            throw new HttpClientException("IO Error processing request", ioe);
+        } catch (Exception e) {
+            throw new HttpClientException("Error processing request", e);
+        }
+        checkStatus(response);
+        return response;
+    }
 
-            BufferedReader post = new BufferedReader(charset == null ? new InputStreamReader(in)
-                    : new InputStreamReader(in, charset));
-            String line = "";
+    private HttpResponse execute(HttpRequest request) throws IOException {
+        String target = request.getUrl().getFile();
+        if (target.length() == 0) {
+            target = "/";
+        }
+        return connectionManager.execute(request.getRoute(), request.getMethod(), target, request.getHeaders(),
+                request.getBody(), request.getConnectTimeout(), request.getReadTimeout());
+    }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("---- HttpClient Response Content ----");
+    private void checkStatus(HttpResponse response) throws HttpClientException {
+        if (response.getStatusCode() >= 400) {
+            throw new HttpClientException("IO Error processing request", new IOException(
+                    "Server returned HTTP response code: " + response.getStatusCode() + " for URL: " + url));
+        }
+    }
+
+    // request for the pooled path or an engine: arguments encoded, headers complete, trusted route
+    private HttpRequest newRequest(String method) throws HttpClientException {
+        if (url == null) {
+            throw new HttpClientException("Cannot process a null URL.");
+        }
+
+        String arguments = null;
+        if (rawStream != null) {
+            arguments = rawStream;
+        } else if (parameters != null) {
+            arguments = urlEncodeArgs(parameters);
+        }
+
+        boolean isPost = method.equalsIgnoreCase("post");
+        if (!isPost && arguments != null) {
+            if (url.contains("?")) {
+                url = url + "&" + arguments;
+            } else {
+                url = url + "?" + arguments;
             }
+        }
 
-            while ((line = post.readLine()) != null) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("[HttpClient] : " + line);
-                }
-                buf.append(line);
+        Map<String, String> requestHeaders = new LinkedHashMap<String, String>();
+        if (contentType != null) {
+            requestHeaders.put("Content-Type", contentType);
+        } else if (isPost) {
+            requestHeaders.put("Content-Type", "application/x-www-form-urlencoded");
+        }
+        requestHeaders.put("Connection", keepAlive ? "keep-alive" : "close");
+        if (basicAuthUsername != null) {
+            String token = basicAuthUsername + ":" + (basicAuthPassword == null ? "" : basicAuthPassword);
+            requestHeaders.put("Authorization", "Basic " + Base64.encodeBase64String(token.getBytes()));
+        }
+        if (headers != null) {
+            requestHeaders.putAll(headers);
+        }
+
+        try {
+            requestUrl = new URL(url);
+            byte[] body = null;
+            if (isPost) {
+                body = arguments == null ? new byte[0] : arguments.getBytes(this.streamCharset != null
+                        ? this.streamCharset : "UTF-8");
+            }
+            return new HttpRequest(method.toUpperCase(), requestUrl, requestHeaders, body, HttpRoute.valueOf(
+                    requestUrl, clientCertAlias, false, hostVerification), connectTimeout, readTimeout, httpVersion);
+        } catch (IOException ioe) {
+            throw new HttpClientException("IO Error processing request", ioe);
+        }
+    }
+
+    // charset parameter of a Content-Type, the platform default when absent
+    private static Charset getCharset(String contentType) {
+        if (contentType == null) {
+            return Charset.defaultCharset();
+        }
+        String charset = null;
+        contentType = contentType.toUpperCase();
+        int charsetEqualsLoc = contentType.indexOf("=", contentType.indexOf("CHARSET"));
+        int afterSemiColon = contentType.indexOf(";", charsetEqualsLoc);
+        if (charsetEqualsLoc >= 0 && afterSemiColon >= 0) {
+            charset = contentType.substring(charsetEqualsLoc + 1, afterSemiColon);
+        } else if (charsetEqualsLoc >= 0) {
+            charset = contentType.substring(charsetEqualsLoc + 1);
+        }
+
+        if (charset == null) {
+            return Charset.defaultCharset();
+        }
+        // not cached here: the name comes from the server, Charset.forName keeps its own small cache
+        return Charset.forName(charset.trim());
+    }
+
+    // reads the whole body, into an exactly sized array when the length is known
+    private static byte[] readBody(InputStream in, long contentLength) throws IOException {
+        if (contentLength >= 0 && contentLength <= MAX_PRESIZED_BODY) {
+            byte[] body = new byte[(int) contentLength];
+            int offset = 0;
+            int n;
+            while (offset < body.length && (n = in.read(body, offset, body.length - offset)) != -1) {
+                offset += n;
+            }
+            return offset == body.length ? body : Arrays.copyOf(body, offset);
+        }
+        byte[] buffer = READ_BUFFER.get();
+        int length = 0;
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        if (buffer.length <= MAX_PRESIZED_BODY) {
+            READ_BUFFER.set(buffer);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    // same text as reading with BufferedReader.readLine(): line terminators normalized, or removed
+    private static String toLines(String text, boolean lineFeed) {
+        if (lineFeed && text.indexOf('\r') < 0) {
+            // already normalized, only the final line feed may be missing
+            return text.length() == 0 || text.charAt(text.length() - 1) == '\n' ? text : text + "\n";
+        }
+        StringBuilder buf = new StringBuilder(text.length() + 1);
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                buf.append(text, start, i);
                 if (lineFeed) {
-                    buf.append("\n");
+                    buf.append('\n');
                 }
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            buf.append(text, start, length);
+            if (lineFeed) {
+                buf.append('\n');
             }
-        } catch (Exception e) {
-            throw new HttpClientException("Error processing input stream", e);
         }
         return buf.toString();
     }
 
-    private InputStream sendHttpRequestStream(String method) throws HttpClientException {
-        return sendHttpRequestStream(method, false);
-    }
-
     private InputStream sendHttpRequestStream(String method, boolean overrideTrust) throws HttpClientException {
 
         String arguments = null;
@@ -436,9 +784,11 @@ public class HttpClient {
         try {
             requestUrl = new URL(url);
             if (overrideTrust) {
-                con = URLConnector.openUntrustedConnection(requestUrl, timeout, clientCertAlias, hostVerification);
+                con = URLConnector.openUntrustedConnection(requestUrl, connectTimeout, readTimeout, clientCertAlias,
+                        hostVerification);
             } else {
-                con = URLConnector.openConnection(requestUrl, timeout, clientCertAlias, hostVerification);
+                con = URLConnector.openConnection(requestUrl, connectTimeout, readTimeout, clientCertAlias,
+                        hostVerification);
             }
 
             if (logger.isDebugEnabled()) {
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pools persistent HTTP/1.1 connections per route.
+ * 
+ * <pre>
+ * maxPerRoute              connections (leased + idle) allowed per route, 0 for no limit (default)
+ * idleTimeout              idle connections older than this are closed by a background evictor
+ * validateAfterInactivity  idle connections older than this are checked for a server-side close before reuse
+ * leaseTimeout             how long to wait for a free connection when the route is at its limit
+ * maxContentLength         largest response body accepted, larger responses fail and close the connection
+ * </pre>
+ * 
+ * Unlike HttpURLConnection, connections are made directly to the target:
+ * proxies configured through system properties are not used.
+ * 
+ * Requests are never retried on another connection, as bank requests are
+ * usually not idempotent.
+ */
+public class HttpConnectionManager {
+    private static final Logger logger                            = LoggerFactory
+                                                                      .getLogger(HttpConnectionManager.class);
+    public static final int     DEFAULT_MAX_PER_ROUTE             = 0;
+    public static final long    DEFAULT_IDLE_TIMEOUT              = 30000;
+    public static final long    DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+    public static final long    DEFAULT_LEASE_TIMEOUT             = 3000;
+    public static final int     DEFAULT_MAX_CONTENT_LENGTH        = 16 << 20;
+
+    private final int                                 maxPerRoute;
+    private final long                                idleTimeout;
+    private final ConcurrentMap<HttpRoute, RoutePool> pools;
+    private final AtomicBoolean                       evictorStarted;
+    private volatile long                             validateAfterInactivity;
+    private volatile long                             leaseTimeout;
+    private volatile int                              maxContentLength;
+    private volatile boolean                          shutdown;
+
+    public HttpConnectionManager() {
+        this(DEFAULT_MAX_PER_ROUTE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public HttpConnectionManager(int maxPerRoute, long idleTimeout) {
+        if (maxPerRoute < 0) {
+            throw new IllegalArgumentException("maxPerRoute must not be negative");
+        }
+        this.maxPerRoute = maxPerRoute;
+        this.idleTimeout = idleTimeout;
+        this.pools = new ConcurrentHashMap<HttpRoute, RoutePool>();
+        this.evictorStarted = new AtomicBoolean();
+        this.validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+        this.leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+        this.maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+    }
+
+    /**
+     * Sends a request over a pooled connection and reads the complete
+     * response. The connection is returned to the pool when the server allows
+     * it to be kept alive.
+     */
+    public HttpResponse execute(HttpRoute route, String method, String target, Map<String, String> headers,
+            byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        PooledConnection.checkRequest(method, target, headers);
+        PooledConnection connection = lease(route, connectTimeout);
+        boolean reusable = false;
+        try {
+            HttpResponse response = connection.execute(method, target, headers, body, readTimeout, maxContentLength);
+            reusable = connection.isReusable();
+            return response;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    PooledConnection lease(HttpRoute route, int connectTimeout) throws IOException {
+        if (shutdown) {
+            throw new IOException("Connection manager is shut down");
+        }
+        RoutePool pool = getPool(route);
+        pool.acquire(route, leaseTimeout);
+        try {
+            PooledConnection connection;
+            long now = System.currentTimeMillis();
+            while ((connection = pool.idle.pollFirst()) != null) {
+                long inactivity = now - connection.getLastUsed();
+                if (inactivity < idleTimeout && (inactivity < validateAfterInactivity || !connection.isStale())) {
+                    return connection;
+                }
+                connection.close();
+            }
+            return open(route, connectTimeout);
+        } catch (IOException e) {
+            pool.release();
+            throw e;
+        } catch (RuntimeException e) {
+            pool.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection connection, boolean reusable) {
+        RoutePool pool = getPool(connection.getRoute());
+        if (reusable && !shutdown && connection.isOpen()) {
+            connection.touch();
+            pool.idle.offerFirst(connection);
+        } else {
+            connection.close();
+        }
+        pool.release();
+    }
+
+    private PooledConnection open(HttpRoute route, int connectTimeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(route.getHost(), route.getPort()), connectTimeout);
+            socket.setTcpNoDelay(true);
+            if (route.isSecure()) {
+                socket = handshake(route, socket, connectTimeout);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Connection opened to : " + route);
+            }
+            return new PooledConnection(route, socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private SSLSocket handshake(HttpRoute route, Socket socket, int timeout) throws IOException {
+        SSLSocketFactory factory;
+        try {
+            factory = SSLUtil.getSSLSocketFactory(route.getClientCertAlias(), route.isTrustAny(), route.getHost());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to create SSLSocketFactory", e);
+        }
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, route.getHost(), route.getPort(), true);
+        try {
+            HostnameVerifier verifier = SSLUtil.getHostnameVerifier(route.getHostVerification());
+            if (verifier == null) {
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+            }
+            sslSocket.setSoTimeout(timeout);
+            long start = System.currentTimeMillis();
+            sslSocket.startHandshake();
+            SSLSessionCache.record(route.getHost(), sslSocket.getSession(), start);
+            if (verifier != null && !verifier.verify(route.getHost(), sslSocket.getSession())) {
+                throw new SSLPeerUnverifiedException("Host name verification failed for " + route.getHost());
+            }
+            return sslSocket;
+        } catch (IOException e) {
+            sslSocket.close();
+            throw e;
+        }
+    }
+
+    private RoutePool getPool(HttpRoute route) {
+        RoutePool pool = pools.get(route);
+        if (pool == null) {
+            pool = new RoutePool(maxPerRoute);
+            RoutePool existing = pools.putIfAbsent(route, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+            startEvictor();
+        }
+        return pool;
+    }
+
+    private void startEvictor() {
+        if (idleTimeout <= 0 || !evictorStarted.compareAndSet(false, true)) {
+            return;
+        }
+        final long interval = Math.max(1000, Math.min(idleTimeout / 2, 5000));
+        ThreadUtil.newThread(new Runnable() {
+            public void run() {
+                while (!shutdown) {
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    closeIdle(idleTimeout);
+                }
+            }
+        }, "HttpConnectionManager-evictor").start();
+    }
+
+    /**
+     * Closes connections that have been idle longer than the given time.
+     */
+    public void closeIdle(long idleMillis) {
+        long deadline = System.currentTimeMillis() - idleMillis;
+        for (RoutePool pool : pools.values()) {
+            Iterator<PooledConnection> iterator = pool.idle.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection connection = iterator.next();
+                if (connection.getLastUsed() <= deadline && pool.idle.removeFirstOccurrence(connection)) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and refuses further leases. Leased
+     * connections are closed when released.
+     */
+    public void shutdown() {
+        shutdown = true;
+        closeIdle(-1);
+    }
+
+    /** Returns the number of idle connections for the route. */
+    public int getIdleCount(HttpRoute route) {
+        RoutePool pool = pools.get(route);
+        return pool == null ? 0 : pool.idle.size();
+    }
+
+    /** Returns the number of leased connections for the route. */
+    public int getLeasedCount(HttpRoute route) {
+        RoutePool pool = pools.get(route);
+        return pool == null ? 0 : pool.leased.get();
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /** Idle time after which a connection is checked before being reused. */
+    public void setValidateAfterInactivity(long validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    public long getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /** Time to wait for a free connection when a route is at its limit. */
+    public void setLeaseTimeout(long leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /** Largest response body accepted, in bytes. */
+    public void setMaxContentLength(int maxContentLength) {
+        if (maxContentLength < 0) {
+            throw new IllegalArgumentException("maxContentLength must not be negative");
+        }
+        this.maxContentLength = maxContentLength;
+    }
+
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    // connections of one route; idle connections are reused most-recently-used first
+    private static class RoutePool {
+        // null when the route is not limited
+        final Semaphore                               permits;
+        final AtomicInteger                           leased = new AtomicInteger();
+        final ConcurrentLinkedDeque<PooledConnection> idle   = new ConcurrentLinkedDeque<PooledConnection>();
+
+        RoutePool(int maxPerRoute) {
+            this.permits = maxPerRoute > 0 ? new Semaphore(maxPerRoute) : null;
+        }
+
+        void acquire(HttpRoute route, long timeout) throws IOException {
+            if (permits != null) {
+                try {
+                    if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                        throw new IOException("Timeout waiting for connection to " + route);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for connection to " + route);
+                }
+            }
+            leased.incrementAndGet();
+        }
+
+        void release() {
+            leased.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+}
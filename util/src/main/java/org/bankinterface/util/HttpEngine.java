@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Alternative transport for {@link HttpClient}. An engine executes fully prepared requests and completes the
+ * returned future when the response has been read, without holding a thread while waiting on the network.
+ *
+ * @see HttpClient#setEngine(HttpEngine)
+ */
+public interface HttpEngine {
+
+    /**
+     * Sends the request. The route carries the client certificate alias, trust mode and host verification level to
+     * be applied, see {@link SSLUtil#getSSLContext(String, boolean, String, int)}.
+     *
+     * @param request
+     * @return completed with the response of any status, or exceptionally with the I/O failure. Cancelling it
+     *         should abort the exchange
+     */
+    CompletableFuture<HttpResponse> execute(HttpRequest request);
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * HTTP request prepared by {@link HttpClient} for an {@link HttpEngine}: arguments are already encoded into the URL or
+ * the body, and the content type, authorization and custom headers are set.
+ */
+public class HttpRequest {
+    public static final String        HTTP_1_1 = "HTTP/1.1";
+    public static final String        HTTP_2   = "HTTP/2";
+
+    private final String              method;
+    private final URL                 url;
+    private final Map<String, String> headers;
+    private final byte[]              body;
+    private final HttpRoute           route;
+    private final int                 connectTimeout;
+    private final int                 readTimeout;
+    private final String              version;
+
+    public HttpRequest(String method, URL url, Map<String, String> headers, byte[] body, HttpRoute route,
+            int connectTimeout, int readTimeout) {
+        this(method, url, headers, body, route, connectTimeout, readTimeout, HTTP_1_1);
+    }
+
+    /**
+     * @param version {@link #HTTP_1_1} or {@link #HTTP_2}, engines without HTTP/2 support use HTTP/1.1
+     */
+    public HttpRequest(String method, URL url, Map<String, String> headers, byte[] body, HttpRoute route,
+            int connectTimeout, int readTimeout, String version) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+        this.route = route;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.version = version == null ? HTTP_1_1 : version;
+    }
+
+    /** Returns the upper-case method name. */
+    public String getMethod() {
+        return method;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /** Returns the request body, null for requests without one. */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public HttpRoute getRoute() {
+        return route;
+    }
+
+    /** Returns the connect timeout in milliseconds. */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /** Returns the read timeout in milliseconds. */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /** Returns the requested protocol version. */
+    public String getVersion() {
+        return version;
+    }
+
+    /** Returns true if HTTP/2 is requested. */
+    public boolean isHttp2() {
+        return HTTP_2.equalsIgnoreCase(version);
+    }
+
+    /** Returns a copy of this request sent over the given route. */
+    HttpRequest withRoute(HttpRoute route) {
+        return new HttpRequest(method, url, headers, body, route, connectTimeout, readTimeout, version);
+    }
+}
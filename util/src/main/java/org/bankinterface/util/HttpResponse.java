@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP response read from a pooled connection or returned by an {@link HttpEngine}.
+ */
+public class HttpResponse {
+    private final int                       statusCode;
+    private final String                    reasonPhrase;
+    private final Map<String, List<String>> headers;
+    private final byte[]                    body;
+
+    /**
+     * @param headers response headers keyed by lower-case name
+     */
+    public HttpResponse(int statusCode, String reasonPhrase, Map<String, List<String>> headers, byte[] body) {
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReasonPhrase() {
+        return reasonPhrase;
+    }
+
+    /** Returns all response headers, keyed by lower-case name. */
+    public Map<String, List<String>> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /** Returns the last value of the named header, or null. */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name.toLowerCase());
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    /** Returns the length of the body read. */
+    public int getContentLength() {
+        return body.length;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
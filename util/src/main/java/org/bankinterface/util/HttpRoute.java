@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.net.URL;
+
+/**
+ * Route of an HTTP connection, connections of the same route can be reused.
+ */
+public final class HttpRoute {
+    private final String  scheme;
+    private final String  host;
+    private final int     port;
+    private final String  clientCertAlias;
+    private final boolean trustAny;
+    private final int     hostVerification;
+    private final int     hash;
+
+    public HttpRoute(String scheme, String host, int port, String clientCertAlias, boolean trustAny,
+            int hostVerification) {
+        this.scheme = scheme.toLowerCase();
+        this.host = host.toLowerCase();
+        this.port = port;
+        this.clientCertAlias = clientCertAlias;
+        this.trustAny = trustAny;
+        this.hostVerification = hostVerification;
+        int h = this.scheme.hashCode();
+        h = 31 * h + this.host.hashCode();
+        h = 31 * h + port;
+        h = 31 * h + (clientCertAlias == null ? 0 : clientCertAlias.hashCode());
+        h = 31 * h + (trustAny ? 1 : 0);
+        this.hash = 31 * h + hostVerification;
+    }
+
+    public static HttpRoute valueOf(URL url, String clientCertAlias, boolean trustAny, int hostVerification) {
+        int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+        return new HttpRoute(url.getProtocol(), url.getHost(), port, clientCertAlias, trustAny, hostVerification);
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getClientCertAlias() {
+        return clientCertAlias;
+    }
+
+    public boolean isTrustAny() {
+        return trustAny;
+    }
+
+    public int getHostVerification() {
+        return hostVerification;
+    }
+
+    public boolean isSecure() {
+        return "https".equals(scheme);
+    }
+
+    /** Returns the value of the Host request header. */
+    public String getHostHeader() {
+        boolean defaultPort = isSecure() ? port == 443 : port == 80;
+        return defaultPort ? host : host + ":" + port;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HttpRoute)) {
+            return false;
+        }
+        HttpRoute other = (HttpRoute) obj;
+        return hash == other.hash && port == other.port && trustAny == other.trustAny
+                && hostVerification == other.hostVerification && scheme.equals(other.scheme)
+                && host.equals(other.host)
+                && (clientCertAlias == null ? other.clientCertAlias == null : clientCertAlias
+                        .equals(other.clientCertAlias));
+    }
+
+    @Override
+    public String toString() {
+        return scheme + "://" + host + ":" + port + (clientCertAlias == null ? "" : " [" + clientCertAlias + "]");
+    }
+}
@@ -56,10 +56,13 @@ import org.slf4j.LoggerFactory;
  * Utilities for getting KeyManagers and TrustManagers
  */
 public class KeyStoreUtil {
-    private static final Logger          logger             = LoggerFactory.getLogger(KeyStoreUtil.class);
-    static Map<String, Object[]>         customerCertStore  = new ConcurrentHashMap<String, Object[]>();
-    static Map<String, KeyStore>         customerTrustStore = new ConcurrentHashMap<String, KeyStore>();
-    private static Map<String, Object[]> signVerifyStore    = new ConcurrentHashMap<String, Object[]>();
+    public static final String                 CHECK_INTERVAL_PROPERTY = "bankinterface.trustStoreCheckInterval";
+    private static final Logger                logger                  = LoggerFactory.getLogger(KeyStoreUtil.class);
+    static Map<String, Object[]>               customerCertStore       = new ConcurrentHashMap<String, Object[]>();
+    static Map<String, KeyStore>               customerTrustStore      = new ConcurrentHashMap<String, KeyStore>();
+    private static Map<String, Object[]>       signVerifyStore         = new ConcurrentHashMap<String, Object[]>();
+    private static volatile long               trustStoreCheckInterval = Long.getLong(CHECK_INTERVAL_PROPERTY, 0L);
+    private static volatile TrustStoreSnapshot systemTrustStore;
 
     public static void registerCertStore(String url, String password, String type) {
         try {
@@ -69,6 +72,7 @@ public class KeyStoreUtil {
                 store[0] = password;
                 store[1] = ks;
                 customerCertStore.put(url, store);
+                SSLUtil.invalidateSSLSocketFactories();
             }
         } catch (Exception e) {
             logger.error("Register KeyStore Erorr, URL : " + url);
@@ -80,6 +84,7 @@ public class KeyStoreUtil {
             KeyStore ks = getStore(new URL(url), password, type);
             if (ks != null) {
                 customerTrustStore.put(url, ks);
+                SSLUtil.invalidateSSLSocketFactories();
             }
         } catch (Exception e) {
             logger.error("Register KeyStore Erorr, URL : " + url);
@@ -141,15 +146,88 @@ public class KeyStoreUtil {
         return ks;
     }
 
+    /**
+     * Returns the system trust store. It is read from disk once and shared; when a check interval is set the file
+     * is re-checked at most once per interval and reloaded if it changed.
+     */
     public static KeyStore getSystemTrustStore() throws IOException, GeneralSecurityException {
-        String javaHome = System.getProperty("java.home");
-        String fileName = System.getProperty("javax.net.ssl.trustStore");
-        String password = System.getProperty("javax.net.ssl.trustStorePassword");
-        if (password == null) {
-            password = "changeit";
+        TrustStoreSnapshot snapshot = systemTrustStore;
+        if (snapshot == null) {
+            synchronized (KeyStoreUtil.class) {
+                snapshot = systemTrustStore;
+                if (snapshot == null) {
+                    snapshot = TrustStoreSnapshot.load();
+                    systemTrustStore = snapshot;
+                }
+            }
+        } else if (trustStoreCheckInterval > 0 && snapshot.shouldCheck(trustStoreCheckInterval)) {
+            snapshot = refreshSystemTrustStore(snapshot);
         }
+        return snapshot.keyStore;
+    }
 
-        KeyStore ks = KeyStore.getInstance("jks");
+    /**
+     * Reloads the system trust store if it was loaded, the check interval has elapsed and the file changed. Called
+     * on every SSL socket factory lookup, so cached factories follow the file; between checks it only reads the
+     * clock.
+     */
+    static void checkSystemTrustStore() throws IOException, GeneralSecurityException {
+        TrustStoreSnapshot snapshot = systemTrustStore;
+        long interval = trustStoreCheckInterval;
+        if (snapshot != null && interval > 0 && snapshot.shouldCheck(interval)) {
+            refreshSystemTrustStore(snapshot);
+        }
+    }
+
+    /**
+     * Re-reads the system trust store unconditionally and drops the cached SSL socket factories.
+     */
+    public static KeyStore reloadSystemTrustStore() throws IOException, GeneralSecurityException {
+        TrustStoreSnapshot snapshot = TrustStoreSnapshot.load();
+        systemTrustStore = snapshot;
+        SSLUtil.invalidateSSLSocketFactories();
+        return snapshot.keyStore;
+    }
+
+    /**
+     * Sets how often (ms) the system trust store file is checked for modification, 0 disables the check. Defaults to
+     * the system property {@value #CHECK_INTERVAL_PROPERTY} or 0.
+     */
+    public static void setTrustStoreCheckInterval(long interval) {
+        trustStoreCheckInterval = interval;
+    }
+
+    public static long getTrustStoreCheckInterval() {
+        return trustStoreCheckInterval;
+    }
+
+    private static TrustStoreSnapshot refreshSystemTrustStore(TrustStoreSnapshot snapshot) throws IOException,
+            GeneralSecurityException {
+        synchronized (KeyStoreUtil.class) {
+            if (systemTrustStore != snapshot) {
+                return systemTrustStore;
+            }
+            if (!snapshot.isModified()) {
+                return snapshot;
+            }
+            logger.info("System trust store changed, reloading : " + snapshot.file);
+            TrustStoreSnapshot reloaded;
+            try {
+                reloaded = TrustStoreSnapshot.load();
+            } catch (IOException e) {
+                // the file may be being replaced, keep the previous snapshot and retry next interval
+                logger.warn("Reload system trust store Error, keep the previous one", e);
+                return snapshot;
+            }
+            systemTrustStore = reloaded;
+            SSLUtil.invalidateSSLSocketFactories();
+            return reloaded;
+        }
+    }
+
+    private static File getSystemTrustStoreFile() {
+        String javaHome = System.getProperty("java.home");
+        String fileName = System.getProperty("javax.net.ssl.trustStore");
         File keyFile = null;
         if (fileName != null) {
             keyFile = new File(fileName);
@@ -159,7 +237,16 @@ public class KeyStoreUtil {
                 keyFile = new File(javaHome + "/lib/security/cacerts");
             }
         }
+        return keyFile;
+    }
+
+    private static KeyStore loadSystemTrustStore(File keyFile) throws IOException, GeneralSecurityException {
+        String password = System.getProperty("javax.net.ssl.trustStorePassword");
+        if (password == null) {
+            password = "changeit";
+        }
 
+        KeyStore ks = KeyStore.getInstance("jks");
         if (keyFile.exists() && keyFile.canRead()) {
             InputStream in = new FileInputStream(keyFile);
             try {
@@ -173,6 +260,40 @@ public class KeyStoreUtil {
         return ks;
     }
 
+    // snapshot of the system trust store with the file's modification time and length at load time
+    static final class TrustStoreSnapshot {
+        final File     file;
+        final long     lastModified;
+        final long     length;
+        final KeyStore keyStore;
+        volatile long  lastCheck;
+
+        private TrustStoreSnapshot(File file, long lastModified, long length, KeyStore keyStore) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.keyStore = keyStore;
+            this.lastCheck = System.currentTimeMillis();
+        }
+
+        static TrustStoreSnapshot load() throws IOException, GeneralSecurityException {
+            File file = getSystemTrustStoreFile();
+            long lastModified = file.lastModified();
+            long length = file.length();
+            return new TrustStoreSnapshot(file, lastModified, length, loadSystemTrustStore(file));
+        }
+
+        boolean shouldCheck(long interval) {
+            return System.currentTimeMillis() - lastCheck >= interval;
+        }
+
+        boolean isModified() {
+            lastCheck = System.currentTimeMillis();
+            File current = getSystemTrustStoreFile();
+            return !current.equals(file) || current.lastModified() != lastModified || current.length() != length;
+        }
+    }
+
     public static X509Certificate readCertificate(byte[] certChain) throws CertificateException {
         CertificateFactory cf = CertificateFactory.getInstance("X.509");
         ByteArrayInputStream bais = new ByteArrayInputStream(certChain);
@@ -15,39 +15,51 @@
  */
 package org.bankinterface.util;
 
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * MultiTrustManager used to authenticate the remote side of a secure socket.
+ * MultiTrustManager used to authenticate the remote side of a secure socket. The certificates of the added key
+ * stores are indexed by fingerprint and subject when the store is added, so a trust check only looks up the
+ * certificates of the presented chain.
  */
 public class MultiTrustManager implements X509TrustManager {
     private static final Logger logger = LoggerFactory.getLogger(MultiTrustManager.class);
     protected List<KeyStore>    keystores;
+    private volatile TrustIndex index  = TrustIndex.EMPTY;
 
     public MultiTrustManager(KeyStore ks) {
         this();
-        keystores.add(ks);
+        add(ks);
     }
 
     public MultiTrustManager() {
         keystores = new ArrayList<KeyStore>();
     }
 
-    public void add(KeyStore ks) {
+    public synchronized void add(KeyStore ks) {
         if (ks != null) {
             keystores.add(ks);
+            index = index.with(readCertificates(ks));
         }
     }
 
@@ -68,61 +80,108 @@ public class MultiTrustManager implements X509TrustManager {
     }
 
     public X509Certificate[] getAcceptedIssuers() {
-        List<X509Certificate> issuers = new ArrayList<X509Certificate>();
-        for (KeyStore store : keystores) {
-            try {
-                Enumeration<String> e = store.aliases();
-                while (e.hasMoreElements()) {
-                    String alias = e.nextElement();
-                    Certificate[] chain = store.getCertificateChain(alias);
-                    if (chain != null) {
-                        for (Certificate cert : chain) {
-                            if (cert instanceof X509Certificate) {
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug("Read certificate (chain) : "
-                                            + ((X509Certificate) cert).getSubjectX500Principal().getName());
-                                }
-                                issuers.add((X509Certificate) cert);
-                            }
-                        }
-                    } else {
-                        Certificate cert = store.getCertificate(alias);
-                        if (cert != null && cert instanceof X509Certificate) {
+        return index.issuers.clone();
+    }
+
+    protected boolean isTrusted(X509Certificate[] cert) {
+        if (cert != null) {
+            TrustIndex current = index;
+            for (X509Certificate c : cert) {
+                if (logger.isDebugEnabled())
+                    logger.debug("--- Checking cert: " + c.getSubjectX500Principal());
+                if (current.contains(c)) {
+                    if (logger.isDebugEnabled())
+                        logger.debug("--- Found trusted cert: " + c.getSerialNumber().toString(16) + " : "
+                                + c.getSubjectX500Principal());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<X509Certificate> readCertificates(KeyStore store) {
+        List<X509Certificate> certs = new ArrayList<X509Certificate>();
+        try {
+            Enumeration<String> e = store.aliases();
+            while (e.hasMoreElements()) {
+                String alias = e.nextElement();
+                Certificate[] chain = store.getCertificateChain(alias);
+                if (chain != null) {
+                    for (Certificate cert : chain) {
+                        if (cert instanceof X509Certificate) {
                             if (logger.isDebugEnabled()) {
-                                logger.debug("Read certificate : "
+                                logger.debug("Read certificate (chain) : "
                                         + ((X509Certificate) cert).getSubjectX500Principal().getName());
                             }
-                            issuers.add((X509Certificate) cert);
+                            certs.add((X509Certificate) cert);
+                        }
+                    }
+                } else {
+                    Certificate cert = store.getCertificate(alias);
+                    if (cert != null && cert instanceof X509Certificate) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Read certificate : "
+                                    + ((X509Certificate) cert).getSubjectX500Principal().getName());
                         }
+                        certs.add((X509Certificate) cert);
                     }
                 }
-            } catch (KeyStoreException e) {
-                logger.warn(e.getMessage());
             }
+        } catch (KeyStoreException e) {
+            logger.warn(e.getMessage());
         }
+        return certs;
+    }
 
-        return issuers.toArray(new X509Certificate[issuers.size()]);
+    private static ByteBuffer fingerprint(X509Certificate cert) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(cert.getEncoded()));
+        } catch (CertificateEncodingException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    protected boolean isTrusted(X509Certificate[] cert) {
-        if (cert != null) {
-            X509Certificate[] issuers = this.getAcceptedIssuers();
-            if (issuers != null) {
-                for (X509Certificate issuer : issuers) {
-                    for (X509Certificate c : cert) {
-                        if (logger.isDebugEnabled())
-                            logger.debug("--- Checking cert: " + issuer.getSubjectX500Principal()
-                                    + " vs " + c.getSubjectX500Principal());
-                        if (issuer.equals(c)) {
-                            if (logger.isDebugEnabled())
-                                logger.debug("--- Found trusted cert: " + issuer.getSerialNumber().toString(16)
-                                        + " : " + issuer.getSubjectX500Principal());
-                            return true;
-                        }
-                    }
+    // immutable index, replaced as a whole when a key store is added
+    static final class TrustIndex {
+        static final TrustIndex          EMPTY = new TrustIndex(new X509Certificate[0], new HashSet<ByteBuffer>(),
+                                                       new HashSet<X500Principal>());
+
+        final X509Certificate[]          issuers;
+        private final Set<ByteBuffer>    fingerprints;
+        // certificates whose subject is not indexed need no fingerprint
+        private final Set<X500Principal> subjects;
+
+        private TrustIndex(X509Certificate[] issuers, Set<ByteBuffer> fingerprints, Set<X500Principal> subjects) {
+            this.issuers = issuers;
+            this.fingerprints = fingerprints;
+            this.subjects = subjects;
+        }
+
+        TrustIndex with(List<X509Certificate> certs) {
+            List<X509Certificate> allIssuers = new ArrayList<X509Certificate>(Arrays.asList(issuers));
+            Set<ByteBuffer> allFingerprints = new HashSet<ByteBuffer>(fingerprints);
+            Set<X500Principal> allSubjects = new HashSet<X500Principal>(subjects);
+            for (X509Certificate cert : certs) {
+                allIssuers.add(cert);
+                ByteBuffer fingerprint = fingerprint(cert);
+                if (fingerprint != null) {
+                    allFingerprints.add(fingerprint);
+                    allSubjects.add(cert.getSubjectX500Principal());
                 }
             }
+            return new TrustIndex(allIssuers.toArray(new X509Certificate[allIssuers.size()]), allFingerprints,
+                    allSubjects);
+        }
+
+        boolean contains(X509Certificate cert) {
+            if (!subjects.contains(cert.getSubjectX500Principal())) {
+                return false;
+            }
+            ByteBuffer fingerprint = fingerprint(cert);
+            return fingerprint != null && fingerprints.contains(fingerprint);
         }
-        return false;
     }
 }
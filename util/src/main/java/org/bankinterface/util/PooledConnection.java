@@ -0,0 +1,359 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent HTTP/1.1 connection owned by {@link HttpConnectionManager}.
+ */
+class PooledConnection {
+    private static final Charset LATIN1          = Charset.forName("ISO-8859-1");
+    private static final int     MAX_LINE_LENGTH = 8192;
+    private static final int     MAX_HEADERS     = 256;
+
+    private final HttpRoute      route;
+    private final Socket         socket;
+    private final InputStream    in;
+    private final OutputStream   out;
+    private final long           created;
+    private volatile long        lastUsed;
+    private boolean              reusable;
+
+    PooledConnection(HttpRoute route, Socket socket) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        this.created = System.currentTimeMillis();
+        this.lastUsed = created;
+    }
+
+    HttpRoute getRoute() {
+        return route;
+    }
+
+    long getCreated() {
+        return created;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /** Whether the last exchange left the connection reusable. */
+    boolean isReusable() {
+        return reusable;
+    }
+
+    boolean isOpen() {
+        return !socket.isClosed() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+    }
+
+    /**
+     * Checks whether the server has closed the connection while it was idle.
+     * An idle HTTP connection must not have anything to read, so a read that
+     * times out means the connection is still usable.
+     */
+    boolean isStale() {
+        if (!isOpen()) {
+            return true;
+        }
+        int soTimeout = 0;
+        try {
+            soTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            // end of stream, or unsolicited data that leaves the connection out of sync
+            in.read();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        } finally {
+            try {
+                socket.setSoTimeout(soTimeout);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    /**
+     * Rejects request lines and headers that would split the request, i.e.
+     * contain CR or LF.
+     */
+    static void checkRequest(String method, String target, Map<String, String> headers) {
+        checkToken("method", method);
+        checkToken("target", target);
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                String name = entry.getKey();
+                if (name == null || name.isEmpty() || name.indexOf(':') >= 0 || containsLineBreak(name)) {
+                    throw new IllegalArgumentException("Invalid header name: " + name);
+                }
+                if (entry.getValue() == null || containsLineBreak(entry.getValue())) {
+                    throw new IllegalArgumentException("Invalid value of header " + name);
+                }
+            }
+        }
+    }
+
+    private static void checkToken(String name, String value) {
+        if (value == null || value.isEmpty() || containsLineBreak(value)) {
+            throw new IllegalArgumentException("Invalid request " + name + ": " + value);
+        }
+    }
+
+    private static boolean containsLineBreak(String value) {
+        return value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0;
+    }
+
+    /**
+     * Sends the request and reads the complete response.
+     * 
+     * @param method request method
+     * @param target path and query
+     * @param headers request headers, Host and Content-Length are added
+     * @param body request body, may be null
+     * @param readTimeout socket read timeout in milliseconds
+     * @param maxContentLength largest response body accepted
+     */
+    HttpResponse execute(String method, String target, Map<String, String> headers, byte[] body, int readTimeout,
+            int maxContentLength) throws IOException {
+        reusable = false;
+        socket.setSoTimeout(readTimeout);
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(route.getHostHeader()).append("\r\n");
+        boolean close = false;
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                head.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+                if ("Connection".equalsIgnoreCase(entry.getKey()) && "close".equalsIgnoreCase(entry.getValue())) {
+                    close = true;
+                }
+            }
+        }
+        if (body != null) {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(LATIN1));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+
+        String statusLine;
+        int statusCode;
+        Map<String, List<String>> responseHeaders;
+        do {
+            statusLine = readLine();
+            statusCode = parseStatusCode(statusLine);
+            responseHeaders = readHeaders();
+            // skip interim responses, e.g. 100 Continue
+        } while (statusCode >= 100 && statusCode < 200 && statusCode != 101);
+
+        boolean http10 = statusLine.startsWith("HTTP/1.0");
+        String connection = last(responseHeaders, "connection");
+        boolean keepAlive = http10 ? "keep-alive".equalsIgnoreCase(connection) : !"close"
+                .equalsIgnoreCase(connection);
+
+        byte[] content;
+        boolean delimited = true;
+        String transferEncoding = last(responseHeaders, "transfer-encoding");
+        if ("HEAD".equalsIgnoreCase(method) || statusCode == 204 || statusCode == 304) {
+            content = new byte[0];
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            content = readChunked(maxContentLength);
+        } else if (responseHeaders.containsKey("content-length")) {
+            content = readFully(parseContentLength(responseHeaders.get("content-length"), maxContentLength));
+        } else {
+            content = readToEnd(maxContentLength);
+            delimited = false;
+        }
+
+        reusable = keepAlive && delimited && !close;
+        int space = statusLine.indexOf(' ', 9);
+        String reason = space < 0 ? "" : statusLine.substring(space + 1);
+        return new HttpResponse(statusCode, reason, responseHeaders, content);
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static int parseStatusCode(String statusLine) throws IOException {
+        if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    // all values must agree, a response with conflicting lengths cannot be framed safely
+    private static int parseContentLength(List<String> values, int maxContentLength) throws IOException {
+        long length = -1;
+        for (String value : values) {
+            long parsed;
+            try {
+                parsed = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + value);
+            }
+            if (parsed < 0 || (length >= 0 && parsed != length)) {
+                throw new IOException("Invalid Content-Length: " + values);
+            }
+            length = parsed;
+        }
+        if (length > maxContentLength) {
+            throw new IOException("Response body too large: " + length);
+        }
+        return (int) length;
+    }
+
+    private Map<String, List<String>> readHeaders() throws IOException {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        String line;
+        int count = 0;
+        while ((line = readLine()).length() > 0) {
+            if (++count > MAX_HEADERS) {
+                throw new IOException("Too many headers");
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase();
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                headers.put(name, values);
+            }
+            values.add(line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private static String last(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, LATIN1);
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new IOException("Header line too long");
+            }
+            line.write(b);
+        }
+        throw new EOFException("Connection closed by server");
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int n = in.read(buffer, offset, length - offset);
+            if (n == -1) {
+                throw new EOFException("Premature end of response body");
+            }
+            offset += n;
+        }
+        return buffer;
+    }
+
+    private byte[] readChunked(int maxContentLength) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        while (true) {
+            String line = readLine();
+            int semicolon = line.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((semicolon < 0 ? line : line.substring(0, semicolon)).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + line);
+            }
+            if (size < 0) {
+                throw new IOException("Invalid chunk size: " + line);
+            }
+            if (size > maxContentLength - content.size()) {
+                throw new IOException("Response body too large");
+            }
+            if (size == 0) {
+                // trailers
+                while (readLine().length() > 0) {
+                }
+                return content.toByteArray();
+            }
+            content.write(readFully((int) size));
+            if (readLine().length() != 0) {
+                throw new IOException("Missing chunk terminator");
+            }
+        }
+    }
+
+    private byte[] readToEnd(int maxContentLength) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (n > maxContentLength - content.size()) {
+                throw new IOException("Response body too large");
+            }
+            content.write(buffer, 0, n);
+        }
+        return content.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return route + " " + socket.getLocalPort();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Per host TLS client session cache settings and resumption counters.
+ * <p>
+ * A host with settings gets its own SSLContext (see {@link SSLUtil#getSSLSocketFactory(String, boolean, String)}),
+ * so its session cache is sized for that host alone and shared by every connection to it. Hosts without settings
+ * share the JSSE defaults. Hits and misses are counted for handshakes made by {@link HttpConnectionManager}.
+ */
+public class SSLSessionCache {
+    private static final ConcurrentMap<String, Settings> settings = new ConcurrentHashMap<String, Settings>();
+    private static final ConcurrentMap<String, Counter>  counters = new ConcurrentHashMap<String, Counter>();
+
+    /**
+     * Configures the session cache of the given host.
+     *
+     * @param host bank host name, case insensitive
+     * @param size maximum number of cached sessions, 0 for no limit, negative keeps the JSSE default
+     * @param timeout session lifetime in seconds, 0 for no limit, negative keeps the JSSE default
+     */
+    public static void configure(String host, int size, int timeout) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host is required");
+        }
+        settings.put(host.toLowerCase(), new Settings(size, timeout));
+        SSLUtil.invalidateSSLSocketFactories();
+    }
+
+    public static boolean isConfigured(String host) {
+        return host != null && settings.containsKey(host.toLowerCase());
+    }
+
+    public static long getHits(String host) {
+        Counter counter = counters.get(host.toLowerCase());
+        return counter == null ? 0 : counter.hits.sum();
+    }
+
+    public static long getMisses(String host) {
+        Counter counter = counters.get(host.toLowerCase());
+        return counter == null ? 0 : counter.misses.sum();
+    }
+
+    /** Clears the hit and miss counters of every host. */
+    public static void resetCounters() {
+        counters.clear();
+    }
+
+    // applies the host settings to a newly created context
+    static void apply(String host, SSLSessionContext context) {
+        Settings hostSettings = settings.get(host.toLowerCase());
+        if (hostSettings == null || context == null) {
+            return;
+        }
+        if (hostSettings.size >= 0) {
+            context.setSessionCacheSize(hostSettings.size);
+        }
+        if (hostSettings.timeout >= 0) {
+            context.setSessionTimeout(hostSettings.timeout);
+        }
+    }
+
+    /**
+     * Records the outcome of a completed handshake. A resumed session keeps the creation time of the session it
+     * was resumed from, so it predates the start of the handshake. This is a heuristic: JSSE does not report
+     * resumption directly, creation times have millisecond resolution, and a session resumed within the same
+     * millisecond it was created in counts as a miss.
+     */
+    static void record(String host, SSLSession session, long handshakeStart) {
+        Counter counter = counters.get(host.toLowerCase());
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = counters.putIfAbsent(host.toLowerCase(), counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        if (session.getCreationTime() < handshakeStart) {
+            counter.hits.increment();
+        } else {
+            counter.misses.increment();
+        }
+    }
+
+    static final class Settings {
+        final int size;
+        final int timeout;
+
+        Settings(int size, int timeout) {
+            this.size = size;
+            this.timeout = timeout;
+        }
+    }
+
+    static final class Counter {
+        final LongAdder hits   = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+}
@@ -16,6 +16,7 @@
 package org.bankinterface.util;
 
 import java.io.IOException;
+import java.net.Socket;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.Principal;
@@ -26,16 +27,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
 import javax.net.ssl.X509KeyManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -50,6 +55,43 @@ public class SSLUtil {
     public static final int     HOSTCERT_NO_CHECK     = 0;
     public static final int     HOSTCERT_MIN_CHECK    = 1;
     public static final int     HOSTCERT_NORMAL_CHECK = 2;
+    // shared contexts per client cert alias, trust mode, session host and level, replaced when the stores change
+    private static volatile ConcurrentMap<FactoryKey, ContextEntry> contexts =
+            new ConcurrentHashMap<FactoryKey, ContextEntry>();
+
+    private static final HostnameVerifier MIN_CHECK_VERIFIER = new HostnameVerifier() {
+        public boolean verify(String hostname, SSLSession session) {
+            javax.security.cert.X509Certificate[] peerCerts;
+            try {
+                peerCerts = session.getPeerCertificateChain();
+            } catch (SSLPeerUnverifiedException e) {
+                // cert not verified
+                logger.warn(e.getMessage());
+                return false;
+            }
+            for (javax.security.cert.X509Certificate peerCert : peerCerts) {
+                if (logger.isInfoEnabled()) {
+                    Principal x500s = peerCert.getSubjectDN();
+                    Map<String, String> subjectMap = KeyStoreUtil.getX500Map(x500s);
+                    logger.info(peerCert.getSerialNumber().toString(16) + " :: " + subjectMap.get("CN"));
+                }
+                try {
+                    peerCert.checkValidity();
+                } catch (Exception e) {
+                    // certificate not valid
+                    logger.warn("Certificate is not valid!");
+                    return false;
+                }
+            }
+            return true;
+        }
+    };
+
+    private static final HostnameVerifier NO_CHECK_VERIFIER = new HostnameVerifier() {
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+    };
 
     public static boolean isClientTrusted(X509Certificate[] chain, String authType) {
         TrustManager[] mgrs = new TrustManager[0];
@@ -135,8 +177,64 @@ public class SSLUtil {
         return context.getSocketFactory();
     }
 
+    /**
+     * Returns the shared factory for the given client cert alias and trust mode. The factory, and with it the TLS
+     * session cache, is built once and reused until a cert or trust store is registered.
+     */
     public static SSLSocketFactory getSSLSocketFactory(String alias, boolean trustAny) throws IOException,
             GeneralSecurityException {
+        return getSSLSocketFactory(alias, trustAny, null);
+    }
+
+    /**
+     * Returns the shared factory for connections to the given host. Hosts configured in {@link SSLSessionCache} get
+     * a factory of their own so their session cache is sized and timed separately, other hosts share the factory
+     * of {@link #getSSLSocketFactory(String, boolean)}.
+     */
+    public static SSLSocketFactory getSSLSocketFactory(String alias, boolean trustAny, String host)
+            throws IOException, GeneralSecurityException {
+        return getContextEntry(alias, trustAny, host, HOSTCERT_NORMAL_CHECK).factory;
+    }
+
+    /**
+     * Returns the shared SSLContext for clients that cannot take a HostnameVerifier, e.g. java.net.http. At
+     * {@link #HOSTCERT_NORMAL_CHECK} the client's endpoint identification applies; at the lower levels the trust
+     * managers perform the level's check in its place.
+     */
+    public static SSLContext getSSLContext(String alias, boolean trustAny, String host, int hostCertLevel)
+            throws IOException, GeneralSecurityException {
+        return getContextEntry(alias, trustAny, host, hostCertLevel).context;
+    }
+
+    /**
+     * Discards the cached socket factories and contexts, called whenever the registered cert or trust stores change.
+     */
+    public static void invalidateSSLSocketFactories() {
+        contexts = new ConcurrentHashMap<FactoryKey, ContextEntry>();
+    }
+
+    private static ContextEntry getContextEntry(String alias, boolean trustAny, String host, int hostCertLevel)
+            throws IOException, GeneralSecurityException {
+        // a changed system trust store drops the cached contexts before the lookup
+        KeyStoreUtil.checkSystemTrustStore();
+        String sessionHost = SSLSessionCache.isConfigured(host) ? host.toLowerCase() : null;
+        int level = hostCertLevel == HOSTCERT_NO_CHECK || hostCertLevel == HOSTCERT_MIN_CHECK ? hostCertLevel
+                : HOSTCERT_NORMAL_CHECK;
+        ConcurrentMap<FactoryKey, ContextEntry> entries = contexts;
+        FactoryKey key = new FactoryKey(alias, trustAny, sessionHost, level);
+        ContextEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = new ContextEntry(createSSLContext(alias, trustAny, sessionHost, level));
+            ContextEntry existing = entries.putIfAbsent(key, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    private static SSLContext createSSLContext(String alias, boolean trustAny, String sessionHost, int level)
+            throws IOException, GeneralSecurityException {
         KeyManager[] km = SSLUtil.getKeyManagers(alias);
         TrustManager[] tm;
         if (trustAny) {
@@ -144,10 +242,20 @@ public class SSLUtil {
         } else {
             tm = SSLUtil.getTrustManagers();
         }
+        if (level != HOSTCERT_NORMAL_CHECK) {
+            for (int i = 0; i < tm.length; i++) {
+                if (tm[i] instanceof X509TrustManager) {
+                    tm[i] = new LevelTrustManager((X509TrustManager) tm[i], level);
+                }
+            }
+        }
 
         SSLContext context = SSLContext.getInstance("SSL");
         context.init(km, tm, new SecureRandom());
-        return context.getSocketFactory();
+        if (sessionHost != null) {
+            SSLSessionCache.apply(sessionHost, context.getClientSessionContext());
+        }
+        return context;
     }
 
     public static SSLSocketFactory getSSLSocketFactory(String alias) throws IOException, GeneralSecurityException {
@@ -181,44 +289,116 @@ public class SSLUtil {
     public static HostnameVerifier getHostnameVerifier(int level) {
         switch (level) {
         case HOSTCERT_MIN_CHECK:
-            return new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    javax.security.cert.X509Certificate[] peerCerts;
-                    try {
-                        peerCerts = session.getPeerCertificateChain();
-                    } catch (SSLPeerUnverifiedException e) {
-                        // cert not verified
-                        logger.warn(e.getMessage());
-                        return false;
-                    }
-                    for (javax.security.cert.X509Certificate peerCert : peerCerts) {
-                        if (logger.isInfoEnabled()) {
-                            Principal x500s = peerCert.getSubjectDN();
-                            Map<String, String> subjectMap = KeyStoreUtil.getX500Map(x500s);
-                            logger.info(peerCert.getSerialNumber().toString(16) + " :: " + subjectMap.get("CN"));
-                        }
-                        try {
-                            peerCert.checkValidity();
-                        } catch (Exception e) {
-                            // certificate not valid
-                            logger.warn("Certificate is not valid!");
-                            return false;
-                        }
-                    }
-                    return true;
-                }
-            };
+            return MIN_CHECK_VERIFIER;
         case HOSTCERT_NO_CHECK:
-            return new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
-            };
+            return NO_CHECK_VERIFIER;
         default:
             return null;
         }
     }
 
+    static final class FactoryKey {
+        private final String  alias;
+        private final boolean trustAny;
+        private final String  host;
+        private final int     level;
+
+        FactoryKey(String alias, boolean trustAny, String host, int level) {
+            this.alias = alias;
+            this.trustAny = trustAny;
+            this.host = host;
+            this.level = level;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (alias == null ? 0 : alias.hashCode()) * 31 + (trustAny ? 1 : 0);
+            hash = hash * 31 + (host == null ? 0 : host.hashCode());
+            return hash * 31 + level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FactoryKey)) {
+                return false;
+            }
+            FactoryKey other = (FactoryKey) obj;
+            return trustAny == other.trustAny && level == other.level
+                    && (alias == null ? other.alias == null : alias.equals(other.alias))
+                    && (host == null ? other.host == null : host.equals(other.host));
+        }
+    }
+
+    static final class ContextEntry {
+        final SSLContext       context;
+        // one factory per context, HttpsURLConnection keeps alive connections per factory instance
+        final SSLSocketFactory factory;
+
+        ContextEntry(SSLContext context) {
+            this.context = context;
+            this.factory = context.getSocketFactory();
+        }
+    }
+
+    /**
+     * Trust manager for the lower host check levels. Being an X509ExtendedTrustManager it replaces the endpoint
+     * identification of the TLS stack; the chain itself is still checked by the delegate.
+     */
+    static final class LevelTrustManager extends X509ExtendedTrustManager {
+        private final X509TrustManager delegate;
+        private final int              level;
+
+        LevelTrustManager(X509TrustManager delegate, int level) {
+            this.delegate = delegate;
+            this.level = level;
+        }
+
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkServerTrusted(chain, authType);
+            if (level == HOSTCERT_MIN_CHECK) {
+                // same as the HOSTCERT_MIN_CHECK HostnameVerifier: every certificate must be valid
+                for (X509Certificate cert : chain) {
+                    cert.checkValidity();
+                }
+            }
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+                throws CertificateException {
+            checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+                throws CertificateException {
+            checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+                throws CertificateException {
+            checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+                throws CertificateException {
+            checkServerTrusted(chain, authType);
+        }
+
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+    }
+
     static class TrustAnyManager implements X509TrustManager {
 
         public void checkClientTrusted(X509Certificate[] certs, String string) throws CertificateException {
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread utilities.
+ * 
+ * <pre>
+ * With the system property bankinterface.virtualThreads=true on a JDK that supports virtual threads,
+ * threads and executors are created on virtual threads, otherwise on daemon platform threads.
+ * </pre>
+ */
+public class ThreadUtil {
+    public static final String  VIRTUAL_THREADS_PROPERTY = "bankinterface.virtualThreads";
+    private static final Logger logger                   = LoggerFactory.getLogger(ThreadUtil.class);
+    // Thread.ofVirtual()
+    private static final Method ofVirtual;
+    // Thread.Builder.unstarted(Runnable)
+    private static final Method unstarted;
+    // Executors.newVirtualThreadPerTaskExecutor()
+    private static final Method newVirtualExecutor;
+
+    static {
+        Method builder = null;
+        Method create = null;
+        Method executor = null;
+        if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+            try {
+                builder = Thread.class.getMethod("ofVirtual");
+                create = builder.getReturnType().getMethod("unstarted", Runnable.class);
+                executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                // fails when the preview feature is not enabled
+                builder.invoke(null);
+            } catch (Exception e) {
+                logger.warn("Virtual threads are not available, fall back to platform threads");
+                builder = null;
+                create = null;
+                executor = null;
+            }
+        }
+        ofVirtual = builder;
+        unstarted = create;
+        newVirtualExecutor = executor;
+    }
+
+    /**
+     * Whether virtual threads are used
+     * 
+     * @return
+     */
+    public static boolean isVirtualThreadsEnabled() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates an unstarted thread
+     * 
+     * @param task
+     * @param name
+     * @return
+     */
+    public static Thread newThread(Runnable task, String name) {
+        if (ofVirtual != null) {
+            try {
+                Thread thread = (Thread) unstarted.invoke(ofVirtual.invoke(null), task);
+                thread.setName(name);
+                return thread;
+            } catch (Exception e) {
+                logger.warn("Create virtual thread Error!", e);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Creates an executor: one virtual thread per task in virtual thread mode, otherwise a cached pool
+     * of daemon threads
+     * 
+     * @param namePrefix name prefix of the platform threads
+     * @return
+     */
+    public static ExecutorService newExecutor(final String namePrefix) {
+        if (newVirtualExecutor != null) {
+            try {
+                return (ExecutorService) newVirtualExecutor.invoke(null);
+            } catch (Exception e) {
+                logger.warn("Create virtual thread executor Error!", e);
+            }
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, namePrefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -16,7 +16,6 @@
 package org.bankinterface.util;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.security.GeneralSecurityException;
@@ -33,10 +32,8 @@ import org.slf4j.LoggerFactory;
 public class URLConnector {
     private static final Logger logger          = LoggerFactory.getLogger(URLConnector.class);
     private static int          timeout         = 3000;
-    private URLConnection       connection      = null;
     private URL                 url             = null;
     private String              clientCertAlias = null;
-    private boolean             timedOut        = false;
     private boolean             trustAnyCert    = false;
     private int                 hostCertLevel   = 2;
 
@@ -50,27 +47,32 @@ public class URLConnector {
         this.hostCertLevel = hostCertLevel;
     }
 
-    protected synchronized URLConnection openConnection(int timeout) throws IOException {
-        Thread t = new Thread(new URLConnectorThread());
-        t.start();
-
-        try {
-            this.wait(timeout);
-        } catch (InterruptedException e) {
-            if (connection == null) {
-                timedOut = true;
-            } else {
-                close(connection);
-            }
-            throw new IOException("Connection never established");
-        }
+    protected URLConnection openConnection(int timeout) throws IOException {
+        return openConnection(timeout, timeout);
+    }
 
-        if (connection != null) {
-            return connection;
-        } else {
-            timedOut = true;
-            throw new IOException("Connection timed out");
+    /**
+     * Opens the connection with real socket timeouts, the connect itself
+     * happens lazily on the caller's thread when the request is sent.
+     */
+    protected URLConnection openConnection(int connectTimeout, int readTimeout) throws IOException {
+        URLConnection con = url.openConnection();
+        con.setConnectTimeout(connectTimeout);
+        con.setReadTimeout(readTimeout);
+
+        if ("HTTPS".equalsIgnoreCase(url.getProtocol())) {
+            HttpsURLConnection scon = (HttpsURLConnection) con;
+            try {
+                scon.setSSLSocketFactory(SSLUtil.getSSLSocketFactory(clientCertAlias, trustAnyCert, url.getHost()));
+                HostnameVerifier hv = SSLUtil.getHostnameVerifier(hostCertLevel);
+                if (hv != null) {
+                    scon.setHostnameVerifier(hv);
+                }
+            } catch (GeneralSecurityException e) {
+                logger.error(e.getMessage());
+            }
         }
+        return con;
     }
 
     // trusted certs only
@@ -88,8 +90,13 @@ public class URLConnector {
 
     public static URLConnection openConnection(URL url, int timeout, String clientCertAlias, int hostCertLevel)
             throws IOException {
+        return openConnection(url, timeout, timeout, clientCertAlias, hostCertLevel);
+    }
+
+    public static URLConnection openConnection(URL url, int connectTimeout, int readTimeout, String clientCertAlias,
+            int hostCertLevel) throws IOException {
         URLConnector uc = new URLConnector(url, clientCertAlias, hostCertLevel, false);
-        return uc.openConnection(timeout);
+        return uc.openConnection(connectTimeout, readTimeout);
     }
 
     // allow untrusted certs
@@ -107,48 +114,12 @@ public class URLConnector {
 
     public static URLConnection openUntrustedConnection(URL url, int timeout, String clientCertAlias, int hostCertLevel)
             throws IOException {
-        URLConnector uc = new URLConnector(url, clientCertAlias, hostCertLevel, true);
-        return uc.openConnection(timeout);
-    }
-
-    // special thread to open the connection
-    private class URLConnectorThread implements Runnable {
-        public void run() {
-            URLConnection con = null;
-            try {
-                con = url.openConnection();
-
-                if ("HTTPS".equalsIgnoreCase(url.getProtocol())) {
-                    HttpsURLConnection scon = (HttpsURLConnection) con;
-                    try {
-                        scon.setSSLSocketFactory(SSLUtil.getSSLSocketFactory(clientCertAlias, trustAnyCert));
-                        HostnameVerifier hv = SSLUtil.getHostnameVerifier(hostCertLevel);
-                        if (hv != null) {
-                            scon.setHostnameVerifier(hv);
-                        }
-                    } catch (GeneralSecurityException e) {
-                        logger.error(e.getMessage());
-                    }
-                }
-            } catch (IOException e) {
-                logger.error(e.getMessage());
-            }
-
-            synchronized (URLConnector.this) {
-                if (timedOut && con != null) {
-                    close(con);
-                } else {
-                    connection = con;
-                    URLConnector.this.notify();
-                }
-            }
-        }
+        return openUntrustedConnection(url, timeout, timeout, clientCertAlias, hostCertLevel);
     }
 
-    // closes the HttpURLConnection does nothing to others
-    private static void close(URLConnection con) {
-        if (con instanceof HttpURLConnection) {
-            ((HttpURLConnection) con).disconnect();
-        }
+    public static URLConnection openUntrustedConnection(URL url, int connectTimeout, int readTimeout,
+            String clientCertAlias, int hostCertLevel) throws IOException {
+        URLConnector uc = new URLConnector(url, clientCertAlias, hostCertLevel, true);
+        return uc.openConnection(connectTimeout, readTimeout);
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.bankinterface.exception.HttpClientException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpClientTest {
+    private HttpServer server;
+    private String     url;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        respond("/gbk", "text/plain; charset=GBK", "中文\r\n报文".getBytes("GBK"));
+        respond("/quoted", "text/html;charset = utf-8 ; format=flowed", "中文".getBytes("UTF-8"));
+        respond("/lines", "text/plain; charset=UTF-8", "a\r\nb\rc\n\nd".getBytes("UTF-8"));
+        respond("/unknown", "text/plain; charset=NO-SUCH-CHARSET", "abc".getBytes("UTF-8"));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDecodesWithResponseCharset() throws Exception {
+        assertEquals("中文\n报文\n", new HttpClient(url + "/gbk").get());
+        assertEquals("中文\n", new HttpClient(url + "/quoted").get());
+    }
+
+    @Test
+    public void testLineHandling() throws Exception {
+        assertEquals("a\nb\nc\n\nd\n", new HttpClient(url + "/lines").get());
+        HttpClient client = new HttpClient(url + "/lines");
+        client.setLineFeed(false);
+        assertEquals("abcd", client.get());
+    }
+
+    @Test
+    public void testBytesUndecoded() throws Exception {
+        assertTrue(Arrays.equals("中文\r\n报文".getBytes("GBK"), new HttpClient(url + "/gbk").getBytes()));
+        assertTrue(Arrays.equals("abc".getBytes("UTF-8"), new HttpClient(url + "/unknown").getBytes()));
+    }
+
+    @Test
+    public void testUnknownCharset() throws Exception {
+        try {
+            new HttpClient(url + "/unknown").get();
+            fail();
+        } catch (HttpClientException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPooledDecodesTheSame() throws Exception {
+        HttpConnectionManager manager = new HttpConnectionManager();
+        try {
+            for (String path : new String[] { "/gbk", "/quoted", "/lines" }) {
+                HttpClient client = new HttpClient(url + path);
+                client.setConnectionManager(manager);
+                client.setKeepAlive(true);
+                assertEquals(path, new HttpClient(url + path).get(), client.get());
+            }
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    private void respond(String path, final String contentType, final byte[] body) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+}
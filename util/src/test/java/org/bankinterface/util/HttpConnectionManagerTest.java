@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpConnectionManagerTest {
+    private StubServer            server;
+    private HttpConnectionManager manager;
+    private HttpRoute             route;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        manager = new HttpConnectionManager();
+        route = new HttpRoute("http", "127.0.0.1", server.getPort(), null, false, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testKeepAliveReuse() throws Exception {
+        server.respond("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = execute();
+            assertEquals(200, response.getStatusCode());
+            assertEquals("ok", new String(response.getBody(), "UTF-8"));
+        }
+        assertEquals(1, server.getAccepted());
+        assertEquals(3, server.getRequests());
+        assertEquals(1, manager.getIdleCount(route));
+        assertEquals(0, manager.getLeasedCount(route));
+    }
+
+    @Test
+    public void testChunkedBody() throws Exception {
+        server.respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: 1\r\n\r\n");
+        assertEquals("hello world", new String(execute().getBody(), "UTF-8"));
+        assertEquals("hello world", new String(execute().getBody(), "UTF-8"));
+        assertEquals(1, server.getAccepted());
+    }
+
+    @Test
+    public void testMalformedLengthFailsAndReleases() throws Exception {
+        String[] heads = { "Content-Length: abc\r\n", "Content-Length: -1\r\n", "Content-Length: 99999999999\r\n",
+                "Content-Length: 2\r\nContent-Length: 3\r\n",
+                "Transfer-Encoding: chunked\r\n\r\nffffffffffffffffff\r\n",
+                "Transfer-Encoding: chunked\r\n\r\n-5\r\n" };
+        for (String head : heads) {
+            server.respond("HTTP/1.1 200 OK\r\n" + head + "\r\nok");
+            try {
+                execute();
+                fail(head);
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals(0, manager.getLeasedCount(route));
+            assertEquals(0, manager.getIdleCount(route));
+        }
+    }
+
+    @Test
+    public void testBodyLargerThanLimit() throws Exception {
+        manager.setMaxContentLength(4);
+        String[] responses = { "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello",
+                "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nhel\r\n2\r\nlo\r\n0\r\n\r\n",
+                "HTTP/1.1 200 OK\r\nConnection: close\r\n\r\nhello" };
+        for (String response : responses) {
+            server.respond(response);
+            try {
+                execute();
+                fail(response);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("too large"));
+            }
+            assertEquals(0, manager.getLeasedCount(route));
+        }
+    }
+
+    @Test
+    public void testHeaderInjectionRejected() throws Exception {
+        try {
+            manager.execute(route, "GET", "/", Collections.singletonMap("X-Test", "a\r\nX-Injected: b"), null, 1000,
+                    1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            manager.execute(route, "GET", "/ HTTP/1.1\r\nX-Injected: b\r\n", null, null, 1000, 1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, server.getAccepted());
+        assertEquals(0, manager.getLeasedCount(route));
+    }
+
+    @Test
+    public void testLeaseTimeout() throws Exception {
+        HttpConnectionManager limited = new HttpConnectionManager(1, 0);
+        limited.setLeaseTimeout(100);
+        try {
+            PooledConnection leased = limited.lease(route, 1000);
+            assertEquals(1, limited.getLeasedCount(route));
+            long start = System.currentTimeMillis();
+            try {
+                limited.execute(route, "GET", "/", null, null, 1000, 1000);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Timeout waiting for connection"));
+            }
+            assertTrue(System.currentTimeMillis() - start >= 100);
+            limited.release(leased, false);
+            assertEquals(0, limited.getLeasedCount(route));
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    public void testNoLimitPerRouteByDefault() throws Exception {
+        assertEquals(0, manager.getMaxPerRoute());
+        List<PooledConnection> leased = new ArrayList<PooledConnection>();
+        for (int i = 0; i < 20; i++) {
+            leased.add(manager.lease(route, 1000));
+        }
+        assertEquals(20, manager.getLeasedCount(route));
+        for (PooledConnection connection : leased) {
+            manager.release(connection, true);
+        }
+        assertEquals(0, manager.getLeasedCount(route));
+        assertEquals(20, manager.getIdleCount(route));
+    }
+
+    @Test
+    public void testStaleConnectionReplaced() throws Exception {
+        manager.setValidateAfterInactivity(0);
+        server.respond("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        server.setCloseAfterResponse(true);
+        execute();
+        assertEquals(1, manager.getIdleCount(route));
+        // wait for the server side close to arrive
+        Thread.sleep(100);
+        assertEquals("ok", new String(execute().getBody(), "UTF-8"));
+        assertEquals(2, server.getAccepted());
+    }
+
+    @Test
+    public void testIdleConnectionsEvicted() throws Exception {
+        server.respond("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        execute();
+        assertEquals(1, manager.getIdleCount(route));
+        Thread.sleep(20);
+        manager.closeIdle(10);
+        assertEquals(0, manager.getIdleCount(route));
+        execute();
+        assertEquals(2, server.getAccepted());
+    }
+
+    private HttpResponse execute() throws IOException {
+        return manager.execute(route, "POST", "/test", Collections.singletonMap("X-Test", "1"),
+                "body".getBytes("UTF-8"), 1000, 1000);
+    }
+
+    // answers every request with the configured raw response
+    private static class StubServer implements Runnable {
+        private final ServerSocket    serverSocket;
+        private final AtomicInteger   accepted = new AtomicInteger();
+        private final AtomicInteger   requests = new AtomicInteger();
+        private final List<Socket>    sockets  = Collections.synchronizedList(new ArrayList<Socket>());
+        private volatile byte[]       response;
+        private volatile boolean      closeAfterResponse;
+
+        StubServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this, "stub-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getAccepted() {
+            return accepted.get();
+        }
+
+        int getRequests() {
+            return requests.get();
+        }
+
+        void respond(String response) throws IOException {
+            this.response = response.getBytes("ISO-8859-1");
+        }
+
+        void setCloseAfterResponse(boolean closeAfterResponse) {
+            this.closeAfterResponse = closeAfterResponse;
+        }
+
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                accepted.incrementAndGet();
+                sockets.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "stub-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                while (readRequest(in)) {
+                    requests.incrementAndGet();
+                    out.write(response);
+                    out.flush();
+                    if (closeAfterResponse) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // client went away
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        private static boolean readRequest(InputStream in) throws IOException {
+            int contentLength = 0;
+            String line;
+            boolean first = true;
+            while ((line = readLine(in)) != null) {
+                if (line.isEmpty()) {
+                    byte[] body = new byte[contentLength];
+                    int offset = 0;
+                    while (offset < contentLength) {
+                        int n = in.read(body, offset, contentLength - offset);
+                        if (n < 0) {
+                            return false;
+                        }
+                        offset += n;
+                    }
+                    return true;
+                }
+                if (!first && line.toLowerCase().startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+                first = false;
+            }
+            return false;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    String s = line.toString("ISO-8859-1");
+                    return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
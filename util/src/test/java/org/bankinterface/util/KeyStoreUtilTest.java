@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeyStoreUtilTest {
+    private File   trustStore;
+    private String previousTrustStore;
+    private String previousPassword;
+
+    @Before
+    public void setUp() throws Exception {
+        previousTrustStore = System.getProperty("javax.net.ssl.trustStore");
+        previousPassword = System.getProperty("javax.net.ssl.trustStorePassword");
+        trustStore = File.createTempFile("trust", ".p12");
+        copy("/trust.p12", trustStore);
+        System.setProperty("javax.net.ssl.trustStore", trustStore.getPath());
+        System.setProperty("javax.net.ssl.trustStorePassword", "changeit");
+        KeyStoreUtil.reloadSystemTrustStore();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KeyStoreUtil.setTrustStoreCheckInterval(0);
+        restore("javax.net.ssl.trustStore", previousTrustStore);
+        restore("javax.net.ssl.trustStorePassword", previousPassword);
+        KeyStoreUtil.reloadSystemTrustStore();
+        trustStore.delete();
+    }
+
+    @Test
+    public void testSnapshotShared() throws Exception {
+        KeyStore keyStore = KeyStoreUtil.getSystemTrustStore();
+        assertTrue(keyStore.containsAlias("server"));
+        assertSame(keyStore, KeyStoreUtil.getSystemTrustStore());
+
+        // without a check interval a changed file is not noticed
+        replaceTrustStore();
+        assertSame(keyStore, KeyStoreUtil.getSystemTrustStore());
+    }
+
+    @Test
+    public void testSnapshotRefreshedWhenFileChanges() throws Exception {
+        KeyStoreUtil.setTrustStoreCheckInterval(10);
+        KeyStore keyStore = KeyStoreUtil.getSystemTrustStore();
+        SSLSocketFactory factory = SSLUtil.getSSLSocketFactory(null, false);
+        Thread.sleep(20);
+        // checked, but unchanged
+        assertSame(keyStore, KeyStoreUtil.getSystemTrustStore());
+        assertSame(factory, SSLUtil.getSSLSocketFactory(null, false));
+
+        replaceTrustStore();
+        Thread.sleep(20);
+        KeyStore reloaded = KeyStoreUtil.getSystemTrustStore();
+        assertNotSame(keyStore, reloaded);
+        assertTrue(reloaded.containsAlias("other"));
+        assertNotSame(factory, SSLUtil.getSSLSocketFactory(null, false));
+        assertSame(reloaded, KeyStoreUtil.getSystemTrustStore());
+    }
+
+    @Test
+    public void testFactoryLookupRefreshesSnapshot() throws Exception {
+        KeyStoreUtil.setTrustStoreCheckInterval(10);
+        SSLSocketFactory factory = SSLUtil.getSSLSocketFactory(null, false);
+        Thread.sleep(20);
+        assertSame(factory, SSLUtil.getSSLSocketFactory(null, false));
+
+        replaceTrustStore();
+        Thread.sleep(20);
+        SSLSocketFactory refreshed = SSLUtil.getSSLSocketFactory(null, false);
+        assertNotSame(factory, refreshed);
+        assertSame(refreshed, SSLUtil.getSSLSocketFactory(null, false));
+        // reloaded by the lookup, not by this read
+        KeyStoreUtil.setTrustStoreCheckInterval(0);
+        assertTrue(KeyStoreUtil.getSystemTrustStore().containsAlias("other"));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        KeyStore keyStore = KeyStoreUtil.getSystemTrustStore();
+        SSLSocketFactory factory = SSLUtil.getSSLSocketFactory(null, false);
+        KeyStore reloaded = KeyStoreUtil.reloadSystemTrustStore();
+        assertNotSame(keyStore, reloaded);
+        assertSame(reloaded, KeyStoreUtil.getSystemTrustStore());
+        assertNotSame(factory, SSLUtil.getSSLSocketFactory(null, false));
+    }
+
+    // a trust store holding the other certificate, with a different length and modification time
+    private void replaceTrustStore() throws Exception {
+        KeyStore other = KeyStore.getInstance("pkcs12");
+        InputStream in = getClass().getResourceAsStream("/other.p12");
+        try {
+            other.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        KeyStore replacement = KeyStore.getInstance("pkcs12");
+        replacement.load(null, null);
+        replacement.setCertificateEntry("other", other.getCertificate("other"));
+        replacement.setCertificateEntry("server", KeyStoreUtil.getSystemTrustStore().getCertificate("server"));
+        long lastModified = trustStore.lastModified();
+        OutputStream out = new FileOutputStream(trustStore);
+        try {
+            replacement.store(out, "changeit".toCharArray());
+        } finally {
+            out.close();
+        }
+        trustStore.setLastModified(lastModified + 2000);
+    }
+
+    private static void copy(String resource, File file) throws Exception {
+        InputStream in = KeyStoreUtilTest.class.getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import org.junit.Test;
+
+public class MultiTrustManagerTest {
+
+    @Test
+    public void testTrustedByFingerprint() throws Exception {
+        X509Certificate server = certificate("/server.p12", "server");
+        X509Certificate other = certificate("/other.p12", "other");
+        // same subject, different key: only the fingerprint tells them apart
+        assertEquals(server.getSubjectX500Principal(), other.getSubjectX500Principal());
+
+        MultiTrustManager manager = new MultiTrustManager(load("/trust.p12"));
+        manager.checkServerTrusted(new X509Certificate[] { server }, "RSA");
+        manager.checkClientTrusted(new X509Certificate[] { server }, "RSA");
+        // a trusted certificate anywhere in the chain is enough
+        manager.checkServerTrusted(new X509Certificate[] { other, server }, "RSA");
+        try {
+            manager.checkServerTrusted(new X509Certificate[] { other }, "RSA");
+            fail();
+        } catch (CertificateException e) {
+            // expected
+        }
+        assertFalse(manager.isTrusted(null));
+        assertFalse(manager.isTrusted(new X509Certificate[0]));
+        assertEquals(1, manager.getAcceptedIssuers().length);
+    }
+
+    @Test
+    public void testAddStore() throws Exception {
+        X509Certificate other = certificate("/other.p12", "other");
+        MultiTrustManager manager = new MultiTrustManager();
+        assertFalse(manager.isTrusted(new X509Certificate[] { other }));
+        assertEquals(0, manager.getAcceptedIssuers().length);
+
+        manager.add(load("/trust.p12"));
+        // chain of a key entry
+        manager.add(load("/other.p12"));
+        manager.add(null);
+        assertEquals(2, manager.getNumberOfKeyStores());
+        assertTrue(manager.isTrusted(new X509Certificate[] { other }));
+        assertEquals(2, manager.getAcceptedIssuers().length);
+        // a copy, not the index itself
+        manager.getAcceptedIssuers()[0] = null;
+        assertNotNull(manager.getAcceptedIssuers()[0]);
+    }
+
+    private static X509Certificate certificate(String resource, String alias) throws Exception {
+        return (X509Certificate) load(resource).getCertificate(alias);
+    }
+
+    private static KeyStore load(String resource) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("pkcs12");
+        InputStream in = MultiTrustManagerTest.class.getResourceAsStream(resource);
+        try {
+            keyStore.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SSLSessionCacheTest {
+    private static final String HOST = "127.0.0.1";
+
+    @Before
+    public void setUp() {
+        SSLSessionCache.resetCounters();
+    }
+
+    @After
+    public void tearDown() {
+        SSLSessionCache.resetCounters();
+        KeyStoreUtil.customerTrustStore.remove(trustStoreUrl());
+        SSLUtil.invalidateSSLSocketFactories();
+    }
+
+    @Test
+    public void testRecordComparesCreationTime() {
+        SSLSessionCache.record("Bank.Example", session(1000), 2000);
+        SSLSessionCache.record("bank.example", session(2000), 2000);
+        SSLSessionCache.record("bank.example", session(2500), 2000);
+        assertEquals(1, SSLSessionCache.getHits("bank.example"));
+        assertEquals(2, SSLSessionCache.getMisses("BANK.EXAMPLE"));
+        assertEquals(0, SSLSessionCache.getHits("other.example"));
+    }
+
+    @Test
+    public void testResumedHandshakeCounted() throws Exception {
+        KeyStoreUtil.registerTrustStore(trustStoreUrl(), "changeit", "pkcs12");
+        for (String protocol : new String[] { "TLSv1.2", "TLSv1.3" }) {
+            // a fresh session cache for each protocol
+            SSLSessionCache.configure(HOST, 10, 60);
+            SSLSessionCache.resetCounters();
+            final SSLServerSocket serverSocket = newServerSocket(protocol);
+            Thread server = new Thread(() -> serve(serverSocket), "stub-tls-server");
+            server.setDaemon(true);
+            server.start();
+            HttpConnectionManager manager = new HttpConnectionManager();
+            try {
+                HttpRoute route = new HttpRoute("https", HOST, serverSocket.getLocalPort(), null, false, 2);
+                for (int i = 0; i < 3; i++) {
+                    // the server closes every connection, so each request makes a handshake
+                    HttpResponse response = manager.execute(route, "GET", "/", null, null, 2000, 2000);
+                    assertEquals("ok", new String(response.getBody(), "UTF-8"));
+                    // creation times have millisecond resolution
+                    Thread.sleep(5);
+                }
+                assertEquals(protocol, 1, SSLSessionCache.getMisses(HOST));
+                assertEquals(protocol, 2, SSLSessionCache.getHits(HOST));
+            } finally {
+                manager.shutdown();
+                serverSocket.close();
+            }
+        }
+    }
+
+    private static String trustStoreUrl() {
+        return SSLSessionCacheTest.class.getResource("/trust.p12").toString();
+    }
+
+    private static SSLServerSocket newServerSocket(String protocol) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("pkcs12");
+        InputStream in = SSLSessionCacheTest.class.getResourceAsStream("/server.p12");
+        try {
+            keyStore.load(in, "changeit".toCharArray());
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore, "changeit".toCharArray());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(factory.getKeyManagers(), null, null);
+        SSLServerSocket serverSocket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 50,
+                InetAddress.getByName(HOST));
+        serverSocket.setEnabledProtocols(new String[] { protocol });
+        return serverSocket;
+    }
+
+    // answers one request per connection and closes it
+    private static void serve(SSLServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                InputStream in = socket.getInputStream();
+                ByteArrayOutputStream head = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    head.write(b);
+                    if (head.toString("ISO-8859-1").endsWith("\r\n\r\n")) {
+                        break;
+                    }
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok"
+                        .getBytes("ISO-8859-1"));
+                out.flush();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private static SSLSession session(final long creationTime) {
+        return (SSLSession) Proxy.newProxyInstance(SSLSession.class.getClassLoader(),
+                new Class<?>[] { SSLSession.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getCreationTime".equals(method.getName())) {
+                            return creationTime;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 bankinterface.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bankinterface.util;
+
+import static org.junit.Assert.*;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SSLUtilTest {
+
+    @After
+    public void tearDown() {
+        KeyStoreUtil.customerTrustStore.remove(trustStoreUrl());
+        SSLUtil.invalidateSSLSocketFactories();
+    }
+
+    @Test
+    public void testFactoryCachedPerAliasAndTrustMode() throws Exception {
+        SSLSocketFactory factory = SSLUtil.getSSLSocketFactory(null, false);
+        assertSame(factory, SSLUtil.getSSLSocketFactory(null, false));
+        assertSame(factory, SSLUtil.getSSLSocketFactory(null, false, "unconfigured.example"));
+        assertNotSame(factory, SSLUtil.getSSLSocketFactory(null, true));
+        assertNotSame(factory, SSLUtil.getSSLSocketFactory("alias", false));
+        assertSame(SSLUtil.getSSLContext(null, false, null, SSLUtil.HOSTCERT_NORMAL_CHECK),
+                SSLUtil.getSSLContext(null, false, null, 99));
+        assertNotSame(SSLUtil.getSSLContext(null, false, null, SSLUtil.HOSTCERT_NORMAL_CHECK),
+                SSLUtil.getSSLContext(null, false, null, SSLUtil.HOSTCERT_MIN_CHECK));
+    }
+
+    @Test
+    public void testFactoryRebuiltWhenStoresChange() throws Exception {
+        SSLSocketFactory factory = SSLUtil.getSSLSocketFactory(null, false);
+        SSLUtil.invalidateSSLSocketFactories();
+        SSLSocketFactory rebuilt = SSLUtil.getSSLSocketFactory(null, false);
+        assertNotSame(factory, rebuilt);
+
+        KeyStoreUtil.registerTrustStore(trustStoreUrl(), "changeit", "pkcs12");
+        SSLSocketFactory withTrustStore = SSLUtil.getSSLSocketFactory(null, false);
+        assertNotSame(rebuilt, withTrustStore);
+        assertSame(withTrustStore, SSLUtil.getSSLSocketFactory(null, false));
+
+        // a store that cannot be read leaves the cache alone
+        KeyStoreUtil.registerTrustStore("file:/does/not/exist.p12", "changeit", "pkcs12");
+        assertSame(withTrustStore, SSLUtil.getSSLSocketFactory(null, false));
+    }
+
+    @Test
+    public void testConfiguredHostGetsOwnFactory() throws Exception {
+        SSLSocketFactory shared = SSLUtil.getSSLSocketFactory(null, false, "session.example");
+        SSLSessionCache.configure("Session.Example", 5, 30);
+        SSLSocketFactory own = SSLUtil.getSSLSocketFactory(null, false, "session.example");
+        assertNotSame(shared, own);
+        assertSame(own, SSLUtil.getSSLSocketFactory(null, false, "SESSION.example"));
+        assertNotSame(own, SSLUtil.getSSLSocketFactory(null, false));
+        assertEquals(5, SSLUtil.getSSLContext(null, false, "session.example", SSLUtil.HOSTCERT_NORMAL_CHECK)
+                .getClientSessionContext().getSessionCacheSize());
+    }
+
+    private static String trustStoreUrl() {
+        return SSLUtilTest.class.getResource("/trust.p12").toString();
+    }
+}